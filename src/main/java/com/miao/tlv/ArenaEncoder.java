@@ -0,0 +1,92 @@
+package com.miao.tlv;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+/**
+ * 使用 {@link EncoderArena} 中的堆外 block 编码，close 后 block 归还给 arena
+ * <p>
+ * 写入方式与 Encoder 相同（Nni 等 Encodable 通过 getWritePosition 写入）；空间不足时从 arena 分配更大的 block，
+ * 拷贝已写入的数据后释放旧 block。{@link #output()} 返回的 direct buffer 只在 close 之前有效。
+ */
+public class ArenaEncoder extends Encoder implements Closeable {
+
+    private final EncoderArena arena;
+
+    private boolean closed = false;
+
+    public ArenaEncoder(EncoderArena arena) {
+        this(arena, EncoderArena._MIN_BLOCK_SIZE);
+    }
+
+    public ArenaEncoder(EncoderArena arena, int initSize) {
+        super(arena.allocate(initSize));
+        this.arena = arena;
+    }
+
+    @Override
+    public int getWritePosition(int sizeofObject) {
+        ensureOpen();
+        if (this.writeBuf.position() < sizeofObject) {
+            grow(this.writeBuf.remaining() + sizeofObject);
+        }
+        this.writeBuf.position(this.writeBuf.position() - sizeofObject);
+        return this.writeBuf.position();
+    }
+
+    /**
+     * 编码结果（direct buffer 的视图），close 之后不能再使用
+     *
+     * @return
+     */
+    public ByteBuffer output() {
+        ensureOpen();
+        return this.writeBuf.slice();
+    }
+
+    /**
+     * 拷贝出编码结果
+     */
+    @Override
+    public byte[] getOutput() {
+        ensureOpen();
+        return Strings.getRemainBytes(this.writeBuf);
+    }
+
+    @Override
+    public Encoder reset() {
+        ensureOpen();
+        return super.reset();
+    }
+
+    @Override
+    public Encoder reset(int maxRetainedSize) {
+        return reset();
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.arena.release(this.writeBuf);
+    }
+
+    private void grow(int required) {
+        ByteBuffer block = this.arena.allocate(Math.max(this.writeBuf.capacity() << 1, required));
+        int position = block.capacity() - this.writeBuf.remaining();
+        block.position(position);
+        block.put(this.writeBuf.duplicate());
+        block.position(position);
+
+        this.arena.release(this.writeBuf);
+        this.writeBuf = block;
+    }
+
+    private void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("encoder is closed");
+        }
+    }
+}
@@ -17,10 +17,11 @@ public class Commons {
     public static final Long MAX_SAFE_INTEGER = 9007199254740991L;
 
     /**
-     * Number.MAX_UNSAFE_INTEGER in ts is 0xFFFFFFFFFFFFFFFFL (18446744073709552000)
+     * NNI 的最大值 0xFFFFFFFFFFFFFFFF = 2^64 - 1 = 18446744073709551615
+     * （ts 中 number 无法精确表示，显示为 18446744073709552000）
      * Long in java max is 9223372036854775807,  min is -9223372036854775808
      */
-    public static final BigInteger MAX_UNSAFE_INTEGER = new BigInteger("18446744073709552000");
+    public static final BigInteger MAX_UNSAFE_INTEGER = new BigInteger("18446744073709551615");
 
     /**
      * 格式化数字，取消科学计算书
@@ -1,15 +1,21 @@
 package com.miao.tlv;
 
 import com.google.common.collect.Lists;
+import com.miao.tlv.nni.Nni;
+import com.miao.tlv.nni.NniArray;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.List;
 
 public class Decoder<R> {
 
     private ByteBuffer readBuf;
 
+    /**
+     * zero-copy 模式：TLV 的 valueBuf 和 decoder 都是原始 buffer 上的只读切片，不再拷贝字节
+     */
+    private boolean zeroCopy = false;
+
     public Decoder(byte[] input) {
         this(input, 0);
     }
@@ -23,6 +29,23 @@ public class Decoder<R> {
         this.readBuf = buffer.duplicate();
     }
 
+    /**
+     * Enable or disable zero-copy read mode.
+     * In zero-copy mode, {@link #read()} returns TLVs whose valueBuf and decoder are read-only
+     * windows over the input buffer, so the input must not be modified while they are in use.
+     *
+     * @param zeroCopy
+     * @return this
+     */
+    public Decoder<R> setZeroCopy(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+        return this;
+    }
+
+    public boolean isZeroCopy() {
+        return this.zeroCopy;
+    }
+
     /**
      * Determine whether end of input has been reached.
      *
@@ -59,34 +82,184 @@ public class Decoder<R> {
         }
 
         int offsetT = this.readBuf.position();
-        int type = readVarNum();
-        int length = readVarNum();
+        long type = readVarNum();
+        int length = readLength();
         if (length == 0) {
             return new TLV(type, length);
         }
 
+        if (this.zeroCopy) {
+            return readSlice(type, length, offsetT);
+        }
+
+        if (length > this.readBuf.remaining()) {
+            throw new IllegalArgumentException(String.format("TLV-LENGTH %s exceeds remaining %s", length, this.readBuf.remaining()));
+        }
+
         byte[] value = new byte[length];
         readBuf.get(value);
 
+        // 不使用 readBuf.array()，direct / 只读 buffer 没有可访问的 backing array
         int offsetE = this.readBuf.position();
-        byte[] tlvBytes = Arrays.copyOfRange(readBuf.array(), offsetT, offsetE);
+        byte[] tlvBytes = new byte[offsetE - offsetT];
+        ByteBuffer tlvBuf = this.readBuf.duplicate();
+        tlvBuf.position(offsetT);
+        tlvBuf.get(tlvBytes);
+        // valueBuf 可写，不保留原始字节（见 TLV#encodedSlice）
         return new TLV(type, length, ByteBuffer.wrap(value), new Decoder(tlvBytes));
     }
 
-    private int readVarNum() {
-        int firstOctet = (int) readBuf.get() & 0XFF;
+    /**
+     * TLV-VALUE 和整个 TLV 都以 position/limit 窗口的方式引用 readBuf，不分配 byte[]
+     */
+    private TLV readSlice(long type, int length, int offsetT) {
+        int offsetV = this.readBuf.position();
+        int offsetE = offsetV + length;
+        if (offsetE > this.readBuf.limit()) {
+            throw new IllegalArgumentException(String.format("TLV-LENGTH %s exceeds remaining %s", length, this.readBuf.remaining()));
+        }
+
+        ByteBuffer valueBuf = slice(offsetV, offsetE);
+        ByteBuffer tlvBuf = slice(offsetT, offsetE);
+        this.readBuf.position(offsetE);
+        return new TLV(type, length, valueBuf, new Decoder(tlvBuf).setZeroCopy(true), tlvBuf);
+    }
+
+    /**
+     * 读取 TLV-TYPE 为 expectedType、TLV-VALUE 为 NNI 的 TLV，直接从 readBuf 中解码，不创建 TLV 和中间 buffer
+     *
+     * @param expectedType
+     * @return NNI
+     * @throws IllegalArgumentException TLV-TYPE / TLV-LENGTH 被截断、TLV-TYPE 不匹配、TLV-LENGTH 超出 buffer 或 TLV-VALUE 不是 NNI，position 都保持不变
+     */
+    public long readNniTlv(long expectedType) {
+        int offsetT = this.readBuf.position();
+        if (offsetT >= this.readBuf.limit()) {
+            throw new IllegalArgumentException(String.format("expected TLV %s, but no TLV remains", expectedType));
+        }
+
+        try {
+            checkHeader(offsetT);
+            long type = readVarNum();
+            if (type != expectedType) {
+                throw new IllegalArgumentException(String.format("expected TLV %s, but got %s", expectedType, type));
+            }
+
+            int length = readLength();
+            int offsetV = this.readBuf.position();
+            if (length > this.readBuf.limit() - offsetV) {
+                throw new IllegalArgumentException(String.format("TLV-LENGTH %s exceeds remaining %s", length, this.readBuf.limit() - offsetV));
+            }
+
+            long n = Nni.decodeLong(this.readBuf, offsetV, length);
+            this.readBuf.position(offsetV + length);
+            return n;
+        } catch (IllegalArgumentException e) {
+            this.readBuf.position(offsetT);
+            throw e;
+        }
+    }
+
+    /**
+     * 连续读取 TLV-TYPE 为 type 的 NNI TLV 到 dst，遇到其他 TLV-TYPE 或 dst 写满时停止
+     *
+     * @param type
+     * @param dst
+     * @return 读取的个数
+     */
+    public int readNniArray(long type, long[] dst) {
+        return NniArray.decode(this.readBuf, type, dst, 0);
+    }
+
+    /**
+     * 检查 offsetT 处的 TLV-TYPE / TLV-LENGTH 没有超出 limit，之后可以直接按下标读取 VAR-NUMBER
+     */
+    private void checkHeader(int offsetT) {
+        int limit = this.readBuf.limit();
+        int sizeofT = sizeofVarNum(this.readBuf.get(offsetT));
+        if (offsetT + sizeofT >= limit) {
+            throw new IllegalArgumentException(String.format("truncated TLV-TYPE at offset %s", offsetT));
+        }
+        if (offsetT + sizeofT + sizeofVarNum(this.readBuf.get(offsetT + sizeofT)) > limit) {
+            throw new IllegalArgumentException(String.format("truncated TLV-LENGTH at offset %s", offsetT));
+        }
+    }
+
+    private ByteBuffer slice(int from, int to) {
+        ByteBuffer window = this.readBuf.duplicate();
+        window.limit(to);
+        window.position(from);
+        return window.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * 按绝对下标读取 VAR-NUMBER，读完后一次性移动 position
+     */
+    private long readVarNum() {
+        int index = this.readBuf.position();
+        long n = getVarNum(this.readBuf, index);
+        this.readBuf.position(index + sizeofVarNum(this.readBuf.get(index)));
+        return n;
+    }
+
+    /**
+     * 读取 TLV-LENGTH，内存中的 TLV-VALUE 不能超过 2GB，更大的 TLV 使用 {@link MappedTlvReader#readRegion()}
+     */
+    private int readLength() {
+        long length = readVarNum();
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("TLV-LENGTH %s is too large for an in-memory TLV", Long.toUnsignedString(length)));
+        }
+        return (int) length;
+    }
+
+    /**
+     * 根据 VAR-NUMBER 的首字节，得到整个 VAR-NUMBER 占用的字节数（1、3、5、9）
+     *
+     * @param firstOctet
+     * @return
+     */
+    public static int sizeofVarNum(byte firstOctet) {
+        int octet = (int) firstOctet & 0XFF;
+        if (octet < 0XFD) {
+            return 1;
+        } else if (octet == 0XFD) {
+            return 3;
+        } else if (octet == 0XFE) {
+            return 5;
+        }
+        return 9;
+    }
+
+    /**
+     * 按绝对下标读取 VAR-NUMBER，不改变 buffer 的 position
+     *
+     * @param buf
+     * @param index
+     * @return
+     */
+    public static long getVarNum(ByteBuffer buf, int index) {
+        int firstOctet = (int) buf.get(index) & 0XFF;
         if (firstOctet < 0XFD) {
             return firstOctet;
         } else if (firstOctet == 0XFD) {
-            return (((int) readBuf.get() & 0XFF) << 8)
-                    + ((int) readBuf.get() & 0XFF);
+            return (((int) buf.get(index + 1) & 0XFF) << 8)
+                    + ((int) buf.get(index + 2) & 0XFF);
         } else if (firstOctet == 0XFE) {
-            return (((int) readBuf.get() & 0XFF) << 24)
-                    + (((int) readBuf.get() & 0XFF) << 16)
-                    + (((int) readBuf.get() & 0XFF) << 8)
-                    + ((int) readBuf.get() & 0XFF);
+            return (((long) buf.get(index + 1) & 0XFF) << 24)
+                    + (((long) buf.get(index + 2) & 0XFF) << 16)
+                    + (((long) buf.get(index + 3) & 0XFF) << 8)
+                    + ((long) buf.get(index + 4) & 0XFF);
         }
-        throw new RuntimeException(" 64-bit VAR-NUMBER is not supported");
+        // 0XFF: 64-bit，超过 Long.MAX_VALUE 时为负数（按无符号数解释）
+        return (((long) buf.get(index + 1) & 0XFF) << 56)
+                + (((long) buf.get(index + 2) & 0XFF) << 48)
+                + (((long) buf.get(index + 3) & 0XFF) << 40)
+                + (((long) buf.get(index + 4) & 0XFF) << 32)
+                + (((long) buf.get(index + 5) & 0XFF) << 24)
+                + (((long) buf.get(index + 6) & 0XFF) << 16)
+                + (((long) buf.get(index + 7) & 0XFF) << 8)
+                + ((long) buf.get(index + 8) & 0XFF);
     }
 }
 
@@ -5,4 +5,13 @@ package com.miao.tlv;
  */
 public interface Encodable {
     void encodeTo(Encoder encoder);
+
+    /**
+     * 编码后的字节数，用于一次分配恰好大小的 buffer
+     *
+     * @return 无法预先计算时返回 -1
+     */
+    default int encodedSize() {
+        return -1;
+    }
 }
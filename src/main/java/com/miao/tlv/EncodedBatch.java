@@ -0,0 +1,82 @@
+package com.miao.tlv;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 批量编码的结果：所有消息首尾相接写在同一个 buffer 中，offsets 记录每个消息的边界
+ * <p>
+ * 第 i 个消息位于 buffer 的 [offsets[i], offsets[i + 1])，offsets 的长度为消息个数 + 1。
+ */
+public class EncodedBatch {
+
+    private final ByteBuffer buffer;
+
+    private final int[] offsets;
+
+    EncodedBatch(ByteBuffer buffer, int[] offsets) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+    }
+
+    /**
+     * 消息个数
+     */
+    public int size() {
+        return this.offsets.length - 1;
+    }
+
+    /**
+     * 整个批次的只读视图，可以一次写出
+     *
+     * @return
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * 偏移表（拷贝）
+     *
+     * @return
+     */
+    public int[] getOffsets() {
+        return this.offsets.clone();
+    }
+
+    public int offset(int index) {
+        checkIndex(index);
+        return this.offsets[index];
+    }
+
+    public int length(int index) {
+        checkIndex(index);
+        return this.offsets[index + 1] - this.offsets[index];
+    }
+
+    /**
+     * 第 index 个消息的只读切片
+     *
+     * @param index
+     * @return
+     */
+    public ByteBuffer get(int index) {
+        checkIndex(index);
+        ByteBuffer window = this.buffer.duplicate();
+        window.limit(this.offsets[index + 1]);
+        window.position(this.offsets[index]);
+        return window.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * 总字节数
+     */
+    public int getSize() {
+        return this.offsets[this.offsets.length - 1];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String.format("index %s is out of %s", index, size()));
+        }
+    }
+}
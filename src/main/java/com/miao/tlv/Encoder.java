@@ -1,10 +1,12 @@
 package com.miao.tlv;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.function.Function;
 
 
 /**
@@ -16,8 +18,34 @@ public class Encoder {
 
 	private final static int _DEFAULT_BUFFER_SIZE = 1024;
 
+	/**
+	 * 线程复用的 Encoder 最多保留的 buffer 大小，超过后归还时重新分配，避免偶发的大消息长期占用内存
+	 */
+	public final static int _MAX_RETAINED_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * 每个线程复用一个 Encoder，静态的 encode 方法稳定后只分配输出的 byte[]
+	 */
+	private final static ThreadLocal<Encoder> _LOCAL_ENCODER = ThreadLocal.withInitial(Encoder::new);
+
 	private int _init_buffer_size = 1024;
-	private volatile ByteBuffer writeBuf;
+	protected volatile ByteBuffer writeBuf;
+
+	/**
+	 * 扩容策略，默认容量翻倍
+	 */
+	private GrowthPolicy growthPolicy = GrowthPolicy.doubling();
+
+	/**
+	 * 扩容次数，reset 后不清零
+	 */
+	private int growCount = 0;
+
+	/**
+	 * 线程复用的 Encoder 是否正在使用（Encodable 中可能嵌套调用静态的 encode 方法）
+	 */
+	@Getter(AccessLevel.NONE)
+	private boolean inUse = false;
 
 	public Encoder() {
 		initial();
@@ -28,6 +56,22 @@ public class Encoder {
 		initial(initSize);
 	}
 
+	public Encoder(int initSize, GrowthPolicy growthPolicy) {
+		this(initSize);
+		this.growthPolicy = growthPolicy;
+	}
+
+	/**
+	 * 直接写入 target 的 [0, capacity)，从末尾向前写；空间不足时扩容到新的堆内 buffer
+	 *
+	 * @param target
+	 */
+	protected Encoder(ByteBuffer target) {
+		this._init_buffer_size = target.capacity();
+		this.writeBuf = target;
+		this.writeBuf.position(this.writeBuf.limit());
+	}
+
 	private void initial() {
 		_init_buffer_size = _DEFAULT_BUFFER_SIZE;
 		writeBuf = ByteBuffer.allocate(_init_buffer_size);
@@ -43,10 +87,44 @@ public class Encoder {
 		return writeBuf.remaining();
 	}
 
+	/**
+	 * 清空已写入的数据，保留已扩容的 buffer，用于编码下一个消息
+	 *
+	 * @return
+	 */
+	public Encoder reset() {
+		writeBuf.clear();
+		writeBuf.position(writeBuf.limit());
+		return this;
+	}
+
+	/**
+	 * 清空已写入的数据，buffer 超过 maxRetainedSize 时重新分配为初始大小
+	 *
+	 * @param maxRetainedSize
+	 * @return
+	 */
+	public Encoder reset(int maxRetainedSize) {
+		if (writeBuf.capacity() > maxRetainedSize) {
+			initial(_init_buffer_size);
+			return this;
+		}
+		return reset();
+	}
+
 	public byte[] getOutput() {
 		return writeBuf.array();
 	}
 
+	/**
+	 * 当前写入的 buffer，只用于按 {@link #getWritePosition(int)} 返回的下标写入
+	 * <p>
+	 * 必须在 getWritePosition 之后获取（可能已扩容或换了 chunk）；读取编码结果使用 {@link #getWriteBuf()}。
+	 */
+	public ByteBuffer getWriteTarget() {
+		return writeBuf;
+	}
+
 	public int getWritePosition(int sizeofObject) {
 		grow(writeBuf.remaining() + sizeofObject);
 		writeBuf.position(writeBuf.limit() - writeBuf.remaining() - sizeofObject);
@@ -78,7 +156,7 @@ public class Encoder {
 		prependValue(ByteBuffer.wrap(bytes));
 	}
 
-	private void prependValue(ByteBuffer buffer) {
+	protected void prependValue(ByteBuffer buffer) {
 		if (buffer == null || buffer.capacity() == 0) {
 			return;
 		}
@@ -101,7 +179,8 @@ public class Encoder {
 			return;
 		}
 
-		int position = this.writeBuf.position();
+		// 编码过程中可能扩容，用已写入字节数之差计算 TLV-LENGTH
+		int size = getSize();
 		for (int i = encodables.length - 1; i >= 0; i--) {
 			Encodable encodable = encodables[i];
 			if (encodable == null) {
@@ -110,7 +189,7 @@ public class Encoder {
 			encodables[i].encodeTo(this);
 		}
 
-		long length = this.writeBuf.position() == position ? 0 : position - this.writeBuf.position();
+		long length = getSize() - size;
 		prependTypeLength(type, length);
 	}
 
@@ -119,6 +198,13 @@ public class Encoder {
 			return;
 		}
 
+		// 未修改过的解码结果，直接拷贝原始字节
+		ByteBuffer encoded = tlv.encodedSlice();
+		if (encoded != null) {
+			prependValue(encoded);
+			return;
+		}
+
 		// T1-L1-[T2-L2-V2, T3-L3-[TL4-L4-V4]]
 		// [T2-L2-V2, TL4-L4-V5]
 
@@ -151,9 +237,159 @@ public class Encoder {
 	 * @return
 	 */
 	public static byte[] encode(Object obj, int initBufSize) {
-		Encoder encoder = new Encoder(initBufSize);
+		int size = sizeOf(obj);
+		if (size >= 0) {
+			// 大小已知：一次分配恰好大小的 buffer，写满后直接返回底层数组
+			Encoder encoder = new Encoder(size);
+			encoder.encoding(obj);
+			ByteBuffer buf = encoder.getWriteBuf();
+			if (buf.position() == 0 && buf.limit() == buf.array().length) {
+				return buf.array();
+			}
+			return Strings.getRemainBytes(buf);
+		}
+
+		return encodeWithLocalEncoder(obj, initBufSize, Strings::getRemainBytes);
+	}
+
+	/**
+	 * 编码到调用方提供的 buffer（堆内或 direct），写入 dst 的 [position, position + n)，完成后 position 前移 n
+	 *
+	 * @param obj 待编码对象
+	 * @param dst 目标 buffer
+	 * @return 写入的字节数 n；dst 剩余空间不足时不移动 position，返回 -(所需字节数)
+	 */
+	public static int encodeInto(Object obj, ByteBuffer dst) {
+		int size = sizeOf(obj);
+		if (size < 0) {
+			return encodeWithLocalEncoder(obj, _DEFAULT_BUFFER_SIZE, buf -> copyInto(buf, dst));
+		}
+		if (dst.remaining() < size) {
+			return -size;
+		}
+
+		// 大小已知：直接在 dst 上从后向前写，没有中间数组
+		ByteBuffer window = dst.duplicate();
+		window.limit(dst.position() + size);
+		ByteBuffer target = window.slice();
+		Encoder encoder = new Encoder(target);
 		encoder.encoding(obj);
-		return Strings.getRemainBytes(encoder.getWriteBuf());
+		if (encoder.getWriteBuf() == target && target.position() == 0) {
+			dst.position(dst.position() + size);
+			return size;
+		}
+		return copyInto(encoder.getWriteBuf(), dst);
+	}
+
+	/**
+	 * 批量编码：所有元素首尾相接写入同一个 buffer，并记录每个元素的偏移
+	 * <p>
+	 * 元素可以是 TLV、Encodable 或 ByteBuffer。所有元素都能预先计算大小时只分配一次，
+	 * 否则按已知大小分配，写入不能预先计算大小的元素时按 GrowthPolicy 扩容。
+	 *
+	 * @param items 待编码对象
+	 * @return
+	 */
+	public static EncodedBatch encodeBatch(List<?> items) {
+		int[] sizes = new int[items.size() + 1];
+		long total = 0;
+		for (Object item : items) {
+			int size = sizeOf(item);
+			if (size > 0) {
+				total += size;
+			}
+		}
+
+		// 从最后一个元素开始向前写，记录每个元素写完后的总字节数
+		Encoder encoder = new Encoder((int) Math.min(total, GrowthPolicy.MAX_CAPACITY));
+		for (int i = items.size() - 1; i >= 0; i--) {
+			encoder.encoding(items.get(i));
+			sizes[i] = encoder.getSize();
+		}
+
+		int size = encoder.getSize();
+		int[] offsets = new int[items.size() + 1];
+		for (int i = 0; i < items.size(); i++) {
+			offsets[i] = size - sizes[i];
+		}
+		offsets[items.size()] = size;
+		return new EncodedBatch(encoder.getWriteBuf().slice(), offsets);
+	}
+
+	private static int copyInto(ByteBuffer buf, ByteBuffer dst) {
+		int size = buf.remaining();
+		if (dst.remaining() < size) {
+			return -size;
+		}
+		dst.put(buf.duplicate());
+		return size;
+	}
+
+	/**
+	 * 使用线程复用的 Encoder 编码，output 读取编码结果（只在回调期间有效）
+	 */
+	private static <R> R encodeWithLocalEncoder(Object obj, int initBufSize, Function<ByteBuffer, R> output) {
+		Encoder encoder = _LOCAL_ENCODER.get();
+		if (encoder.inUse) {
+			// 嵌套调用，不能复用当前线程正在使用的 Encoder
+			encoder = new Encoder(initBufSize);
+			encoder.encoding(obj);
+			return output.apply(encoder.getWriteBuf());
+		}
+
+		encoder.inUse = true;
+		try {
+			encoder.grow(initBufSize);
+			encoder.encoding(obj);
+			return output.apply(encoder.getWriteBuf());
+		} finally {
+			encoder.reset(_MAX_RETAINED_BUFFER_SIZE);
+			encoder.inUse = false;
+		}
+	}
+
+	/**
+	 * 对象编码后的字节数，与 encoding 的写入方式一致
+	 *
+	 * @param obj
+	 * @return 无法预先计算（例如 Encodable 未实现 encodedSize）时返回 -1
+	 */
+	public static int sizeOf(Object obj) {
+		if (obj instanceof ByteBuffer) {
+			ByteBuffer buf = (ByteBuffer) obj;
+			return buf.capacity() == 0 ? 0 : buf.remaining();
+		} else if (obj instanceof TLV) {
+			return sizeofTlv((TLV) obj);
+		} else if (obj instanceof List) {
+			long size = 0;
+			for (Object o : (List) obj) {
+				if (!(o instanceof TLV)) {
+					return -1;
+				}
+				size += sizeofTlv((TLV) o);
+			}
+			return size > Integer.MAX_VALUE ? -1 : (int) size;
+		} else if (obj instanceof Encodable) {
+			return ((Encodable) obj).encodedSize();
+		}
+		return -1;
+	}
+
+	private static int sizeofTlv(TLV tlv) {
+		ByteBuffer encoded = tlv.encodedSlice();
+		if (encoded != null) {
+			return encoded.remaining();
+		}
+
+		int size = Strings.sizeofVarNum(tlv.getType()) + Strings.sizeofVarNum(tlv.getLength());
+		if (tlv.getTlvList() == null || tlv.getTlvList().size() == 0) {
+			ByteBuffer buf = tlv.getValueBuf();
+			return buf == null || buf.capacity() == 0 ? size : size + buf.remaining();
+		}
+		for (TLV child : tlv.getTlvList()) {
+			size += sizeofTlv(child);
+		}
+		return size;
 	}
 
 	/**
@@ -201,36 +437,48 @@ public class Encoder {
 			return;
 		}
 
-		int newCapacity = expandCapacity + _init_buffer_size;
+		int newCapacity = growthPolicy.newCapacity(writeBuf.capacity(), expandCapacity);
+		if (newCapacity < expandCapacity) {
+			throw new IllegalStateException(String.format("growth policy returned %s, but %s is required", newCapacity, expandCapacity));
+		}
+
+		// 只拷贝已写入的 [position, limit)，放到新 buffer 的末尾
 		ByteBuffer expandBuffer = ByteBuffer.allocate(newCapacity);
-		int position = expandBuffer.limit() - writeBuf.limit();
-		// 从 position 开始读
-		writeBuf.flip();
-		// expandBuffer.mark();
+		int position = newCapacity - writeBuf.remaining();
 		expandBuffer.position(position);
-		expandBuffer.put(writeBuf.array());
-		expandBuffer.limit(expandBuffer.capacity());
+		expandBuffer.put(writeBuf.duplicate());
 		expandBuffer.position(position);
-		// expandBuffer.reset();
 		writeBuf = expandBuffer;
+		growCount++;
 	}
 
 
 	private final void writeVarNum(long varNumber, int position) {
-		if (varNumber < 253) {
+		int sizeofVarNum = Strings.sizeofVarNum(varNumber);
+		if (sizeofVarNum == 1) {
 			// todo buffer中已有元素个数和length，再与实际大小做对比
 			// 位与计算
 			writeBuf.put(position, (byte) (varNumber & 0xff));
-		} else if (varNumber <= 0xffff) {
+		} else if (sizeofVarNum == 3) {
 			writeBuf.put(position, (byte) 253);
 			writeBuf.put(position + 1, (byte) ((varNumber >> 8) & 0xff));
 			writeBuf.put(position + 2, (byte) (varNumber & 0xff));
-		} else {
+		} else if (sizeofVarNum == 5) {
 			writeBuf.put(position, (byte) 254);
 			writeBuf.put(position + 1, (byte) ((varNumber >> 24) & 0xff));
 			writeBuf.put(position + 2, (byte) ((varNumber >> 16) & 0xff));
 			writeBuf.put(position + 3, (byte) ((varNumber >> 8) & 0xff));
 			writeBuf.put(position + 4, (byte) (varNumber & 0xff));
+		} else {
+			writeBuf.put(position, (byte) 255);
+			writeBuf.put(position + 1, (byte) ((varNumber >> 56) & 0xff));
+			writeBuf.put(position + 2, (byte) ((varNumber >> 48) & 0xff));
+			writeBuf.put(position + 3, (byte) ((varNumber >> 40) & 0xff));
+			writeBuf.put(position + 4, (byte) ((varNumber >> 32) & 0xff));
+			writeBuf.put(position + 5, (byte) ((varNumber >> 24) & 0xff));
+			writeBuf.put(position + 6, (byte) ((varNumber >> 16) & 0xff));
+			writeBuf.put(position + 7, (byte) ((varNumber >> 8) & 0xff));
+			writeBuf.put(position + 8, (byte) (varNumber & 0xff));
 		}
 	}
 }
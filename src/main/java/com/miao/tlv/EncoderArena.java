@@ -0,0 +1,124 @@
+package com.miao.tlv;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * 预分配的堆外内存（direct slab），为 {@link ArenaEncoder} 提供编码 buffer
+ * <p>
+ * 从 slab 中按 2 的幂切出 block，释放后放入对应大小的空闲链表复用，block 不会还给 slab。
+ * slab 用完后退化为单独分配 direct buffer（不复用），并记录次数，可据此调整 slab 大小。
+ */
+@Slf4j
+public class EncoderArena {
+
+    public static final int _MIN_BLOCK_SIZE = 256;
+
+    private final ByteBuffer slab;
+
+    /**
+     * 下标 i 为大小 _MIN_BLOCK_SIZE << i 的空闲 block
+     */
+    private final ArrayDeque<ByteBuffer>[] freeLists;
+
+    /**
+     * 从 slab 切出的 block，释放时只回收这些 block
+     */
+    private final Set<ByteBuffer> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private int fallbackCount = 0;
+
+    @SuppressWarnings("unchecked")
+    public EncoderArena(int slabSize) {
+        if (slabSize < _MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException(String.format("slabSize should not be less than %s", _MIN_BLOCK_SIZE));
+        }
+        this.slab = ByteBuffer.allocateDirect(slabSize);
+        this.freeLists = new ArrayDeque[sizeClass(Integer.highestOneBit(Integer.MAX_VALUE)) + 1];
+        for (int i = 0; i < this.freeLists.length; i++) {
+            this.freeLists[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * 分配至少 size 字节的 direct block，容量为 2 的幂，[0, capacity) 均可写
+     *
+     * @param size
+     * @return
+     */
+    public synchronized ByteBuffer allocate(int size) {
+        int blockSize = blockSize(size);
+        ArrayDeque<ByteBuffer> freeList = this.freeLists[sizeClass(blockSize)];
+        if (!freeList.isEmpty()) {
+            ByteBuffer block = freeList.pop();
+            block.clear();
+            return block;
+        }
+
+        if (this.slab.remaining() >= blockSize) {
+            ByteBuffer window = this.slab.duplicate();
+            window.limit(window.position() + blockSize);
+            ByteBuffer block = window.slice();
+            this.slab.position(this.slab.position() + blockSize);
+            this.owned.add(block);
+            return block;
+        }
+
+        fallbackCount++;
+        log.warn("encoder arena is exhausted, allocate {} bytes outside the slab", blockSize);
+        return ByteBuffer.allocateDirect(blockSize);
+    }
+
+    /**
+     * 归还 block，不属于 slab 的 block 直接丢弃
+     *
+     * @param block
+     */
+    public synchronized void release(ByteBuffer block) {
+        if (block == null || !this.owned.contains(block)) {
+            return;
+        }
+        this.freeLists[sizeClass(block.capacity())].push(block);
+    }
+
+    /**
+     * slab 的总大小
+     */
+    public int capacity() {
+        return this.slab.capacity();
+    }
+
+    /**
+     * slab 中尚未切分的字节数
+     */
+    public synchronized int unused() {
+        return this.slab.remaining();
+    }
+
+    /**
+     * slab 不足时单独分配的次数
+     */
+    public synchronized int getFallbackCount() {
+        return this.fallbackCount;
+    }
+
+    private static int blockSize(int size) {
+        if (size <= _MIN_BLOCK_SIZE) {
+            return _MIN_BLOCK_SIZE;
+        }
+        int blockSize = Integer.highestOneBit(size - 1) << 1;
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException(String.format("block size %s is too large", size));
+        }
+        return blockSize;
+    }
+
+    private static int sizeClass(int blockSize) {
+        return Integer.numberOfTrailingZeros(blockSize) - Integer.numberOfTrailingZeros(_MIN_BLOCK_SIZE);
+    }
+}
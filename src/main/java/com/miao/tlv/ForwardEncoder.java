@@ -0,0 +1,223 @@
+package com.miao.tlv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 正向流式编码：按顺序写出 TLV，TLV-VALUE 可以来自流，不需要先全部放在内存中
+ * <p>
+ * {@link #begin(long)} 不知道 TLV-LENGTH，先预留 reservedLengthSize 字节（默认 9 字节，0xFF + 8 字节），
+ * {@link #end()} 时回到预留位置写入实际长度，因此只能用于 {@link SeekableByteChannel}（例如文件）。
+ * 回填的 TLV-LENGTH 不是最短编码，Decoder 可以直接读取，校验时需要 {@link TlvValidator#setAllowNonMinimal(boolean)}。
+ * <p>
+ * {@link #begin(long, long)} 预先给出 TLV-LENGTH，使用最短编码，可以写入任意 OutputStream / channel，end 时校验实际长度。
+ */
+public class ForwardEncoder {
+
+    private final WritableByteChannel channel;
+
+    /**
+     * 可回填的 channel，不可回填时为 null
+     */
+    private final SeekableByteChannel seekable;
+
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    private final ByteBuffer header = ByteBuffer.allocate(18);
+
+    private int reservedLengthSize = 9;
+
+    private long position;
+
+    public ForwardEncoder(SeekableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.seekable = channel;
+        this.position = channel.position();
+    }
+
+    public ForwardEncoder(WritableByteChannel channel) {
+        this.channel = channel;
+        this.seekable = null;
+        this.position = 0;
+    }
+
+    public ForwardEncoder(OutputStream out) {
+        this(Channels.newChannel(out));
+    }
+
+    /**
+     * 预留的 TLV-LENGTH 字节数，3 / 5 / 9，分别最多表示 0xFFFF / 0xFFFFFFFF / Long.MAX_VALUE 字节
+     *
+     * @param reservedLengthSize
+     * @return
+     */
+    public ForwardEncoder setReservedLengthSize(int reservedLengthSize) {
+        if (reservedLengthSize != 3 && reservedLengthSize != 5 && reservedLengthSize != 9) {
+            throw new IllegalArgumentException(String.format("reservedLengthSize should be 3, 5 or 9, but got %s", reservedLengthSize));
+        }
+        this.reservedLengthSize = reservedLengthSize;
+        return this;
+    }
+
+    /**
+     * 开始一个长度未知的 TLV，之后写入的字节都属于它的 TLV-VALUE，直到对应的 end
+     *
+     * @param type
+     * @return
+     */
+    public ForwardEncoder begin(long type) throws IOException {
+        if (this.seekable == null) {
+            throw new IllegalStateException("TLV-LENGTH can only be back-patched on a SeekableByteChannel, use begin(type, length)");
+        }
+
+        this.header.clear();
+        Strings.putVarNum(this.header, type, Strings.sizeofVarNum(type));
+        long lengthPosition = this.position + this.header.position();
+        Strings.putVarNum(this.header, 0, this.reservedLengthSize);
+        this.header.flip();
+        writeFully(this.header);
+
+        this.frames.push(new Frame(type, this.position, lengthPosition, -1));
+        return this;
+    }
+
+    /**
+     * 开始一个长度已知的 TLV
+     *
+     * @param type
+     * @param length TLV-VALUE 的字节数
+     * @return
+     */
+    public ForwardEncoder begin(long type, long length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("TLV-LENGTH cannot be negative");
+        }
+
+        this.header.clear();
+        Strings.putVarNum(this.header, type, Strings.sizeofVarNum(type));
+        Strings.putVarNum(this.header, length, Strings.sizeofVarNum(length));
+        this.header.flip();
+        writeFully(this.header);
+
+        this.frames.push(new Frame(type, this.position, -1, length));
+        return this;
+    }
+
+    /**
+     * 结束最近一个 begin 的 TLV
+     *
+     * @return TLV-VALUE 的字节数
+     */
+    public long end() throws IOException {
+        Frame frame = this.frames.poll();
+        if (frame == null) {
+            throw new IllegalStateException("no TLV to end");
+        }
+
+        long length = this.position - frame.valueOffset;
+        if (frame.length >= 0) {
+            if (length != frame.length) {
+                throw new IllegalStateException(String.format("TLV %s declared TLV-LENGTH %s, but %s bytes were written", frame.type, frame.length, length));
+            }
+            return length;
+        }
+
+        if (Strings.sizeofVarNum(length) > this.reservedLengthSize) {
+            throw new IllegalStateException(String.format("TLV-LENGTH %s of TLV %s does not fit in %s reserved bytes", length, frame.type, this.reservedLengthSize));
+        }
+
+        this.header.clear();
+        Strings.putVarNum(this.header, length, this.reservedLengthSize);
+        this.header.flip();
+        this.seekable.position(frame.lengthOffset);
+        while (this.header.hasRemaining()) {
+            this.seekable.write(this.header);
+        }
+        this.seekable.position(this.position);
+        return length;
+    }
+
+    /**
+     * 写入一个完整的 TLV（或其他可编码对象），使用 Encoder 编码
+     *
+     * @param obj
+     * @return
+     */
+    public ForwardEncoder write(Object obj) throws IOException {
+        if (obj instanceof ByteBuffer) {
+            writeFully(((ByteBuffer) obj).duplicate());
+        } else {
+            writeFully(ByteBuffer.wrap(Encoder.encode(obj)));
+        }
+        return this;
+    }
+
+    /**
+     * 写入原始字节（作为当前 TLV 的 TLV-VALUE 的一部分）
+     *
+     * @param bytes
+     * @return
+     */
+    public ForwardEncoder write(byte[] bytes) throws IOException {
+        writeFully(ByteBuffer.wrap(bytes));
+        return this;
+    }
+
+    /**
+     * 把 in 中剩余的字节全部写入当前 TLV 的 TLV-VALUE
+     *
+     * @param in
+     * @return 写入的字节数
+     */
+    public long transferFrom(InputStream in) throws IOException {
+        byte[] chunk = new byte[Commons._DEFAULT_BUFFER_SIZE];
+        long total = 0;
+        int n;
+        while ((n = in.read(chunk)) >= 0) {
+            writeFully(ByteBuffer.wrap(chunk, 0, n));
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * 尚未 end 的 TLV 个数
+     */
+    public int depth() {
+        return this.frames.size();
+    }
+
+    /**
+     * 当前写入位置
+     */
+    public long position() {
+        return this.position;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.position += this.channel.write(buffer);
+        }
+    }
+
+    private static class Frame {
+        private final long type;
+        private final long valueOffset;
+        private final long lengthOffset;
+        private final long length;
+
+        Frame(long type, long valueOffset, long lengthOffset, long length) {
+            this.type = type;
+            this.valueOffset = valueOffset;
+            this.lengthOffset = lengthOffset;
+            this.length = length;
+        }
+    }
+}
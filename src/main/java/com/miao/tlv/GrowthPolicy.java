@@ -0,0 +1,54 @@
+package com.miao.tlv;
+
+/**
+ * Encoder 缓冲区的扩容策略
+ */
+public interface GrowthPolicy {
+
+    /**
+     * 数组的最大长度，部分 JVM 在数组头部保留了若干字节
+     */
+    int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * 计算扩容后的容量
+     *
+     * @param capacity 当前容量
+     * @param required 至少需要的容量
+     * @return 新容量，不小于 required
+     */
+    int newCapacity(int capacity, int required);
+
+    /**
+     * 每次容量翻倍，编码大消息时总的拷贝量是线性的
+     */
+    static GrowthPolicy doubling() {
+        return doubling(MAX_CAPACITY);
+    }
+
+    /**
+     * 容量翻倍，但每次最多增加 maxStep 字节
+     *
+     * @param maxStep 单次扩容的上限
+     * @return
+     */
+    static GrowthPolicy doubling(int maxStep) {
+        if (maxStep <= 0) {
+            throw new IllegalArgumentException("maxStep should be greater than zero");
+        }
+        return (capacity, required) -> {
+            long newCapacity = (long) capacity + Math.max(Math.min(capacity, maxStep), 1);
+            return (int) Math.min(Math.max(newCapacity, required), Math.max(MAX_CAPACITY, required));
+        };
+    }
+
+    /**
+     * 每次在所需容量的基础上增加固定的 step 字节（旧的扩容方式）
+     *
+     * @param step
+     * @return
+     */
+    static GrowthPolicy linear(int step) {
+        return (capacity, required) -> (int) Math.min((long) required + step, Math.max(MAX_CAPACITY, required));
+    }
+}
@@ -0,0 +1,220 @@
+package com.miao.tlv;
+
+import com.google.common.collect.Lists;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 内存映射读取由顶层 TLV 拼接而成的文件
+ * <p>
+ * 文件按 segment 分段映射，可以读取超过 2GB 的文件；TLV 跨越 segment 边界时，从该 TLV 的起始位置重新映射。
+ * 读到的 TLV 与 {@link Decoder#read()} 语义一致，valueBuf 是映射内存上的只读切片，不拷贝到堆上。
+ */
+public class MappedTlvReader implements Closeable {
+
+    /**
+     * 默认每段映射 256MB
+     */
+    public static final int _DEFAULT_SEGMENT_SIZE = 1 << 28;
+
+    /**
+     * TLV-TYPE + TLV-LENGTH 的最大字节数
+     */
+    private static final int _MAX_HEADER_SIZE = 18;
+
+    private final FileChannel channel;
+
+    private final long fileSize;
+
+    private final int segmentSize;
+
+    private MappedByteBuffer segment;
+
+    /**
+     * 当前 segment 在文件中的起始偏移
+     */
+    private long segmentOffset;
+
+    private Decoder segmentDecoder;
+
+    /**
+     * 下一个 TLV 在文件中的偏移
+     */
+    private long position = 0;
+
+    /**
+     * 最近一次 peekTlvSize() 解析出的 TLV-TYPE / TLV-LENGTH / 头部字节数
+     */
+    private long headerType;
+
+    private long headerLength;
+
+    private int headerSize;
+
+    public MappedTlvReader(Path path) throws IOException {
+        this(path, _DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedTlvReader(Path path, int segmentSize) throws IOException {
+        if (segmentSize < _MAX_HEADER_SIZE) {
+            throw new IllegalArgumentException(String.format("segmentSize should not be less than %s", _MAX_HEADER_SIZE));
+        }
+        this.segmentSize = segmentSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = this.channel.size();
+    }
+
+    public boolean eof() {
+        return this.position >= this.fileSize;
+    }
+
+    public long position() {
+        return this.position;
+    }
+
+    /**
+     * 跳转到文件中的某个偏移，该偏移必须是一个顶层 TLV 的起始位置
+     *
+     * @param position
+     */
+    public void position(long position) {
+        if (position < 0 || position > this.fileSize) {
+            throw new IllegalArgumentException(String.format("position %s is out of file size %s", position, this.fileSize));
+        }
+        this.position = position;
+    }
+
+    public long size() {
+        return this.fileSize;
+    }
+
+    public List<TLV> readTlvList() throws IOException {
+        List<TLV> tlvList = Lists.newArrayList();
+        TLV tlv = null;
+        while ((tlv = read()) != null) {
+            tlvList.add(tlv);
+        }
+        return tlvList;
+    }
+
+    /**
+     * 读取下一个顶层 TLV
+     *
+     * @return 下一个 TLV，到达文件末尾时返回 null
+     * @throws EOFException 文件在 TLV 中间结束
+     */
+    public TLV read() throws IOException {
+        if (eof()) {
+            return null;
+        }
+
+        long tlvSize = peekTlvSize();
+        ensureMapped(tlvSize);
+
+        this.segmentDecoder.position((int) (this.position - this.segmentOffset));
+        TLV tlv = this.segmentDecoder.read();
+        this.position += tlvSize;
+        return tlv;
+    }
+
+    /**
+     * 读取下一个顶层 TLV 的位置信息，TLV-VALUE 不映射、不加载到内存，可以超过 2GB
+     *
+     * @return 下一个 TLV 的文件区域，到达文件末尾时返回 null
+     * @throws EOFException 文件在 TLV 中间结束
+     */
+    public TlvRegion readRegion() throws IOException {
+        if (eof()) {
+            return null;
+        }
+
+        long tlvSize = peekTlvSize();
+        TlvRegion region = new TlvRegion(this.channel, this.headerType, this.headerLength, this.position,
+                this.position + this.headerSize);
+        this.position += tlvSize;
+        return region;
+    }
+
+    /**
+     * 跳过下一个顶层 TLV，只读取 TLV-TYPE / TLV-LENGTH，不构造 TLV 对象
+     *
+     * @return 跳过的字节数，到达文件末尾时返回 -1
+     */
+    public long skip() throws IOException {
+        if (eof()) {
+            return -1;
+        }
+
+        long tlvSize = peekTlvSize();
+        this.position += tlvSize;
+        return tlvSize;
+    }
+
+    /**
+     * 读取下一个 TLV 的 TLV-TYPE / TLV-LENGTH（每个 TLV 只解析一次），得到其总字节数，不移动 position
+     *
+     * @throws EOFException 文件在 TLV-TYPE / TLV-LENGTH 或 TLV-VALUE 中间结束
+     */
+    long peekTlvSize() throws IOException {
+        long remaining = this.fileSize - this.position;
+        ensureMapped(Math.min(_MAX_HEADER_SIZE, remaining));
+
+        int index = (int) (this.position - this.segmentOffset);
+        int sizeofT = Decoder.sizeofVarNum(this.segment.get(index));
+        if (remaining < sizeofT + 1) {
+            throw truncated("TLV-TYPE");
+        }
+        int sizeofL = Decoder.sizeofVarNum(this.segment.get(index + sizeofT));
+        if (remaining < sizeofT + sizeofL) {
+            throw truncated("TLV-LENGTH");
+        }
+
+        long length = Decoder.getVarNum(this.segment, index + sizeofT);
+        long tlvSize = sizeofT + sizeofL + length;
+        if (length < 0 || tlvSize < 0 || tlvSize > remaining) {
+            throw truncated("TLV-VALUE");
+        }
+        this.headerType = Decoder.getVarNum(this.segment, index);
+        this.headerLength = length;
+        this.headerSize = sizeofT + sizeofL;
+        return tlvSize;
+    }
+
+    /**
+     * 保证 [position, position + size) 在当前 segment 中，否则从 position 开始重新映射
+     */
+    private void ensureMapped(long size) throws IOException {
+        if (this.segment != null && this.position >= this.segmentOffset
+                && this.position + size <= this.segmentOffset + this.segment.limit()) {
+            return;
+        }
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("TLV size %s exceeds the mappable size, use readRegion() instead", size));
+        }
+
+        long mapSize = Math.min(Math.max(this.segmentSize, size), this.fileSize - this.position);
+        this.segment = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, mapSize);
+        this.segmentOffset = this.position;
+        this.segmentDecoder = new Decoder(this.segment).setZeroCopy(true);
+    }
+
+    private EOFException truncated(String field) {
+        return new EOFException(String.format("file ended inside the %s of the TLV at offset %s (file size %s)",
+                field, this.position, this.fileSize));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.segment = null;
+        this.segmentDecoder = null;
+        this.channel.close();
+    }
+}
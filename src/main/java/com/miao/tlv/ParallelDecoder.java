@@ -0,0 +1,130 @@
+package com.miao.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * 并行解码由顶层 TLV 拼接而成的 buffer
+ * <p>
+ * 先只读取 TLV-TYPE / TLV-LENGTH 扫描出每个顶层 TLV 的边界，再把元素分批交给 ForkJoinPool 解码，
+ * 结果按元素在 buffer 中的顺序返回。Decodable / EvDecoder 会被多个线程同时调用，需要是无状态的。
+ */
+public class ParallelDecoder {
+
+    /**
+     * 每个子任务最多解码的元素个数
+     */
+    public static final int _DEFAULT_BATCH_SIZE = 256;
+
+    private final ForkJoinPool pool;
+
+    private final int batchSize;
+
+    public ParallelDecoder() {
+        this(ForkJoinPool.commonPool(), _DEFAULT_BATCH_SIZE);
+    }
+
+    public ParallelDecoder(ForkJoinPool pool, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize should be greater than zero");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 扫描顶层 TLV 的边界
+     *
+     * @param input 读取 [position, limit)
+     * @return 长度为 n + 1 的数组，第 i 个元素位于 [bounds[i], bounds[i + 1])
+     */
+    public static int[] scan(ByteBuffer input) {
+        TlvCursor cursor = new TlvCursor(input);
+        int[] bounds = new int[64];
+        int count = 0;
+        while (cursor.next()) {
+            if (count + 1 >= bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length << 1);
+            }
+            bounds[count++] = cursor.offset();
+            bounds[count] = cursor.endOffset();
+        }
+        return count == 0 ? new int[]{input.position()} : Arrays.copyOf(bounds, count + 1);
+    }
+
+    /**
+     * 并行解码每个顶层 TLV，decodable 收到的 Decoder 只包含该 TLV（zero-copy）
+     *
+     * @param input
+     * @param decodable
+     * @return 与 TLV 顺序一致的解码结果
+     */
+    public <R> List<R> decode(ByteBuffer input, Decodable<R> decodable) {
+        int[] bounds = scan(input);
+        Object[] results = new Object[bounds.length - 1];
+        this.pool.invoke(new DecodeTask<R>(input, bounds, 0, results.length, decodable, results));
+
+        @SuppressWarnings("unchecked")
+        List<R> list = (List<R>) Arrays.asList(results);
+        return list;
+    }
+
+    public <R> List<R> decode(byte[] input, Decodable<R> decodable) {
+        return decode(ByteBuffer.wrap(input), decodable);
+    }
+
+    /**
+     * 并行解码每个顶层 TLV，每个 TLV 解码到 targetFactory 新建的对象中
+     *
+     * @param input
+     * @param evDecoder
+     * @param targetFactory
+     * @return 与 TLV 顺序一致的解码结果
+     */
+    public <T> List<T> decode(ByteBuffer input, EvDecoder<T> evDecoder, Supplier<? extends T> targetFactory) {
+        return decode(input, decoder -> evDecoder.decode(targetFactory.get(), decoder));
+    }
+
+    public <T> List<T> decode(byte[] input, EvDecoder<T> evDecoder, Supplier<? extends T> targetFactory) {
+        return decode(ByteBuffer.wrap(input), evDecoder, targetFactory);
+    }
+
+    private class DecodeTask<R> extends RecursiveAction {
+        private final ByteBuffer input;
+        private final int[] bounds;
+        private final int from;
+        private final int to;
+        private final Decodable<R> decodable;
+        private final Object[] results;
+
+        DecodeTask(ByteBuffer input, int[] bounds, int from, int to, Decodable<R> decodable, Object[] results) {
+            this.input = input;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.decodable = decodable;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= batchSize) {
+                ByteBuffer window = this.input.duplicate();
+                for (int i = this.from; i < this.to; i++) {
+                    window.limit(this.bounds[i + 1]);
+                    window.position(this.bounds[i]);
+                    this.results[i] = this.decodable.decodeFrom(new Decoder(window.slice().asReadOnlyBuffer()).setZeroCopy(true));
+                }
+                return;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new DecodeTask<R>(this.input, this.bounds, this.from, middle, this.decodable, this.results),
+                    new DecodeTask<R>(this.input, this.bounds, middle, this.to, this.decodable, this.results));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.miao.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 并行编码包含大量子元素的 TLV
+ * <p>
+ * 子元素分批交给 ForkJoinPool，每批编码为一个独立的 segment（{@link Encoder#encodeBatch(List)}），
+ * 最后按顺序拼接并加上外层的 TLV-TYPE / TLV-LENGTH。结果与顺序编码逐字节相同。
+ * 子元素可以是 TLV、Encodable 或 ByteBuffer，编码期间不能被修改。
+ */
+public class ParallelEncoder {
+
+    /**
+     * 每个子任务最多编码的元素个数
+     */
+    public static final int _DEFAULT_BATCH_SIZE = 256;
+
+    private final ForkJoinPool pool;
+
+    private final int batchSize;
+
+    public ParallelEncoder() {
+        this(ForkJoinPool.commonPool(), _DEFAULT_BATCH_SIZE);
+    }
+
+    public ParallelEncoder(ForkJoinPool pool, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize should be greater than zero");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 并行编码元素序列，与 Encoder.encode(items) 结果相同
+     *
+     * @param items
+     * @return
+     */
+    public byte[] encode(List<?> items) {
+        return join(-1, encodeSegments(items));
+    }
+
+    /**
+     * 并行编码一个 TLV，子 TLV 并行编码，叶子 TLV 直接使用 Encoder
+     *
+     * @param tlv
+     * @return
+     */
+    public byte[] encode(TLV tlv) {
+        if (tlv.getTlvList() == null || tlv.getTlvList().isEmpty()) {
+            return Encoder.encode(tlv);
+        }
+        return encodeTlv(tlv.getType(), tlv.getTlvList());
+    }
+
+    /**
+     * 并行编码 TLV-VALUE 为 children 的 TLV，与 Encoder.prependTlv(type, children...) 结果相同
+     *
+     * @param type
+     * @param children
+     * @return
+     */
+    public byte[] encodeTlv(long type, List<?> children) {
+        if (type <= 0) {
+            throw new IllegalArgumentException(String.format("invalid TLV-TYPE %s", type));
+        }
+        return join(type, encodeSegments(children));
+    }
+
+    private ByteBuffer[] encodeSegments(List<?> items) {
+        int batches = (items.size() + this.batchSize - 1) / this.batchSize;
+        ByteBuffer[] segments = new ByteBuffer[batches];
+        if (batches > 0) {
+            this.pool.invoke(new EncodeTask(items, 0, batches, segments));
+        }
+        return segments;
+    }
+
+    /**
+     * 拼接 segment，type 大于 0 时加上外层的 TLV-TYPE / TLV-LENGTH
+     */
+    private static byte[] join(long type, ByteBuffer[] segments) {
+        long length = 0;
+        for (ByteBuffer segment : segments) {
+            length += segment.remaining();
+        }
+
+        int headerSize = type > 0 ? Strings.sizeofVarNum(type) + Strings.sizeofVarNum(length) : 0;
+        if (headerSize + length > GrowthPolicy.MAX_CAPACITY) {
+            throw new IllegalStateException(String.format("encoded size %s is too large", headerSize + length));
+        }
+
+        byte[] output = new byte[(int) (headerSize + length)];
+        ByteBuffer dst = ByteBuffer.wrap(output);
+        if (type > 0) {
+            Strings.putVarNum(dst, type, Strings.sizeofVarNum(type));
+            Strings.putVarNum(dst, length, Strings.sizeofVarNum(length));
+        }
+        for (ByteBuffer segment : segments) {
+            dst.put(segment);
+        }
+        return output;
+    }
+
+    private class EncodeTask extends RecursiveAction {
+        private final List<?> items;
+        private final int from;
+        private final int to;
+        private final ByteBuffer[] segments;
+
+        EncodeTask(List<?> items, int from, int to, ByteBuffer[] segments) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.segments = segments;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                int start = this.from * batchSize;
+                int end = Math.min(start + batchSize, this.items.size());
+                this.segments[this.from] = Encoder.encodeBatch(this.items.subList(start, end)).getBuffer();
+                return;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new EncodeTask(this.items, this.from, middle, this.segments),
+                    new EncodeTask(this.items, middle, this.to, this.segments));
+        }
+    }
+}
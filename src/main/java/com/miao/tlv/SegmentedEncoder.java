@@ -0,0 +1,198 @@
+package com.miao.tlv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 分段编码：向一串定长的 chunk 中从后向前写，不需要一整块连续的大数组
+ * <p>
+ * 当前 chunk 写满后不扩容拷贝，而是分配一个新的 chunk 放在前面。
+ * 编码结果通过 {@link #toBuffers()} 以 ByteBuffer[] 输出，可以直接交给 {@link GatheringByteChannel#write(ByteBuffer[])}。
+ * 单次写入（TLV-TYPE / TLV-LENGTH / NNI）不会跨 chunk，TLV-VALUE 按 chunk 拆分。
+ * {@link #getWriteBuf()} 和 {@link #getOutput()} 返回拼接后的拷贝，只适合小消息。
+ */
+public class SegmentedEncoder extends Encoder {
+
+    /**
+     * 默认 chunk 大小，远小于 G1 的 humongous 对象阈值
+     */
+    public static final int _DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final int chunkSize;
+
+    /**
+     * 已写满的 chunk（只包含已写入的部分），按在消息中的顺序排列
+     */
+    private final Deque<ByteBuffer> retired = new ArrayDeque<>();
+
+    private long retiredSize = 0;
+
+    public SegmentedEncoder() {
+        this(_DEFAULT_CHUNK_SIZE);
+    }
+
+    public SegmentedEncoder(int chunkSize) {
+        super(ByteBuffer.allocate(chunkSize));
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize should be greater than zero");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 当前 chunk 放不下时换一个新的 chunk，不拷贝已写入的数据
+     */
+    @Override
+    public int getWritePosition(int sizeofObject) {
+        if (this.writeBuf.position() < sizeofObject) {
+            nextChunk(Math.max(this.chunkSize, sizeofObject));
+        }
+        this.writeBuf.position(this.writeBuf.position() - sizeofObject);
+        return this.writeBuf.position();
+    }
+
+    /**
+     * TLV-VALUE 从尾部开始按 chunk 拆分写入
+     */
+    @Override
+    protected void prependValue(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() == 0) {
+            return;
+        }
+
+        int start = buffer.position();
+        int end = buffer.limit();
+        while (end > start) {
+            if (this.writeBuf.position() == 0) {
+                nextChunk(this.chunkSize);
+            }
+
+            int n = Math.min(this.writeBuf.position(), end - start);
+            ByteBuffer part = buffer.duplicate();
+            part.limit(end);
+            part.position(end - n);
+
+            int writePosition = this.writeBuf.position() - n;
+            this.writeBuf.position(writePosition);
+            this.writeBuf.put(part);
+            this.writeBuf.position(writePosition);
+            end -= n;
+        }
+    }
+
+    /**
+     * 已写入的总字节数
+     */
+    @Override
+    public int getSize() {
+        long size = this.retiredSize + this.writeBuf.remaining();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format("encoded size %s exceeds Integer.MAX_VALUE, use sizeLong()", size));
+        }
+        return (int) size;
+    }
+
+    public long sizeLong() {
+        return this.retiredSize + this.writeBuf.remaining();
+    }
+
+    /**
+     * 清空已写入的数据，保留当前 chunk
+     */
+    @Override
+    public Encoder reset() {
+        this.retired.clear();
+        this.retiredSize = 0;
+        return super.reset();
+    }
+
+    @Override
+    public Encoder reset(int maxRetainedSize) {
+        return reset();
+    }
+
+    /**
+     * 编码结果，每个元素是一个 chunk 的只读视图，按顺序拼接即为完整消息
+     *
+     * @return
+     */
+    public ByteBuffer[] toBuffers() {
+        ByteBuffer[] buffers = new ByteBuffer[this.retired.size() + 1];
+        buffers[0] = this.writeBuf.slice().asReadOnlyBuffer();
+        int i = 1;
+        for (ByteBuffer chunk : this.retired) {
+            buffers[i++] = chunk.duplicate();
+        }
+        return buffers;
+    }
+
+    /**
+     * 使用 gathering write 写出全部编码结果，channel 必须是阻塞模式
+     *
+     * @param channel
+     * @return 写出的字节数
+     * @throws IllegalArgumentException channel 是非阻塞模式
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("writeTo requires a channel in blocking mode");
+        }
+
+        ByteBuffer[] buffers = toBuffers();
+        long total = sizeLong();
+        long written = 0;
+        int offset = 0;
+        while (written < total) {
+            long n = channel.write(buffers, offset, buffers.length - offset);
+            if (n <= 0) {
+                // 阻塞的 channel 不会返回 0，避免在其他实现上空转
+                throw new IOException(String.format("channel accepted no bytes, %s of %s written", written, total));
+            }
+            written += n;
+            while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 拼接后的编码结果（只读，会拷贝全部数据），[position, limit) 与 {@link Encoder#getWriteBuf()} 的含义相同
+     * <p>
+     * 父类返回的是正在写入的 buffer，这里只有当前 chunk；按下标写入使用 {@link #getWriteTarget()}。
+     */
+    @Override
+    public ByteBuffer getWriteBuf() {
+        return ByteBuffer.wrap(getOutput()).asReadOnlyBuffer();
+    }
+
+    /**
+     * 拼接为一个数组（会拷贝全部数据，仅用于小消息或调试）
+     */
+    @Override
+    public byte[] getOutput() {
+        byte[] output = new byte[getSize()];
+        ByteBuffer dst = ByteBuffer.wrap(output);
+        for (ByteBuffer buffer : toBuffers()) {
+            dst.put(buffer);
+        }
+        return output;
+    }
+
+    public int getChunkCount() {
+        return this.retired.size() + 1;
+    }
+
+    private void nextChunk(int size) {
+        if (this.writeBuf.hasRemaining()) {
+            this.retired.addFirst(this.writeBuf.slice().asReadOnlyBuffer());
+            this.retiredSize += this.writeBuf.remaining();
+        }
+        this.writeBuf = ByteBuffer.allocate(size);
+        this.writeBuf.position(size);
+    }
+}
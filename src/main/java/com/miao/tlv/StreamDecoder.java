@@ -0,0 +1,223 @@
+package com.miao.tlv;
+
+import com.google.common.collect.Lists;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+/**
+ * 流式解码：按块输入字节，每凑齐一个完整的顶层 TLV 就输出一个
+ * <p>
+ * 只持有一个缓冲区，容量不超过 maxFrameSize，与流的总长度无关。
+ * 通过预读 TLV-TYPE / TLV-LENGTH 判断下一个 TLV 还需要多少字节。
+ */
+public class StreamDecoder {
+
+    /**
+     * 默认单个 TLV 的最大字节数
+     */
+    public static final int _DEFAULT_MAX_FRAME_SIZE = 1 << 20;
+
+    /**
+     * TLV-TYPE + TLV-LENGTH 的最大字节数，缓冲区至少要能放下
+     */
+    private static final int _MAX_HEADER_SIZE = 18;
+
+    private final int maxFrameSize;
+
+    /**
+     * 读模式：[position, limit) 为已缓存、未输出的字节
+     */
+    private ByteBuffer buf;
+
+    private boolean eof = false;
+
+    public StreamDecoder() {
+        this(Commons._DEFAULT_BUFFER_SIZE, _DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    public StreamDecoder(int initSize, int maxFrameSize) {
+        if (maxFrameSize < _MAX_HEADER_SIZE) {
+            throw new IllegalArgumentException(String.format("maxFrameSize should not be less than %s", _MAX_HEADER_SIZE));
+        }
+        this.maxFrameSize = maxFrameSize;
+        this.buf = ByteBuffer.allocate(Math.min(Math.max(initSize, _MAX_HEADER_SIZE), maxFrameSize));
+        this.buf.limit(0);
+    }
+
+    /**
+     * 输入一块数据，返回这块数据凑齐的所有顶层 TLV，chunk 会被完全消费
+     *
+     * @param chunk
+     * @return
+     */
+    public List<TLV> feed(byte[] chunk) {
+        return feed(ByteBuffer.wrap(chunk));
+    }
+
+    public List<TLV> feed(ByteBuffer chunk) {
+        List<TLV> tlvList = Lists.newArrayList();
+        while (chunk.hasRemaining()) {
+            ensureCapacity();
+            fill(chunk);
+
+            TLV tlv = null;
+            while ((tlv = poll()) != null) {
+                tlvList.add(tlv);
+            }
+        }
+        return tlvList;
+    }
+
+    /**
+     * 从 channel 中读取下一个顶层 TLV
+     *
+     * @param channel
+     * @return 下一个 TLV；channel 结束（或非阻塞 channel 暂无数据）时返回 null
+     * @throws EOFException channel 在 TLV 中间结束
+     */
+    public TLV read(ReadableByteChannel channel) throws IOException {
+        while (true) {
+            TLV tlv = poll();
+            if (tlv != null) {
+                return tlv;
+            }
+
+            ensureCapacity();
+            this.buf.compact();
+            int n = channel.read(this.buf);
+            this.buf.flip();
+            if (n == 0) {
+                return null;
+            }
+            if (n < 0) {
+                return end();
+            }
+        }
+    }
+
+    /**
+     * 从 InputStream 中读取下一个顶层 TLV
+     *
+     * @param in
+     * @return 下一个 TLV；流结束时返回 null
+     * @throws EOFException 流在 TLV 中间结束
+     */
+    public TLV read(InputStream in) throws IOException {
+        while (true) {
+            TLV tlv = poll();
+            if (tlv != null) {
+                return tlv;
+            }
+
+            ensureCapacity();
+            this.buf.compact();
+            int n = in.read(this.buf.array(), this.buf.arrayOffset() + this.buf.position(), this.buf.remaining());
+            if (n > 0) {
+                this.buf.position(this.buf.position() + n);
+            }
+            this.buf.flip();
+            if (n < 0) {
+                return end();
+            }
+        }
+    }
+
+    /**
+     * 输出已缓存的下一个完整 TLV，不足一个 TLV 时返回 null
+     *
+     * @return
+     */
+    public TLV poll() {
+        int frameSize = frameSize();
+        if (frameSize < 0 || this.buf.remaining() < frameSize) {
+            return null;
+        }
+
+        // 缓冲区会被复用，输出的 TLV 需要持有自己的字节
+        byte[] frame = new byte[frameSize];
+        this.buf.get(frame);
+        return new Decoder(frame).setZeroCopy(true).read();
+    }
+
+    /**
+     * 预读 TLV-TYPE / TLV-LENGTH，得到下一个 TLV 的总字节数
+     *
+     * @return 下一个 TLV 的字节数，头部尚不完整时返回 -1
+     */
+    public int frameSize() {
+        int position = this.buf.position();
+        int remaining = this.buf.remaining();
+        if (remaining < 1) {
+            return -1;
+        }
+
+        int sizeofT = Decoder.sizeofVarNum(this.buf.get(position));
+        if (remaining < sizeofT + 1) {
+            return -1;
+        }
+
+        int sizeofL = Decoder.sizeofVarNum(this.buf.get(position + sizeofT));
+        if (remaining < sizeofT + sizeofL) {
+            return -1;
+        }
+
+        long length = Decoder.getVarNum(this.buf, position + sizeofT);
+        long frameSize = sizeofT + sizeofL + length;
+        if (length < 0 || frameSize > this.maxFrameSize) {
+            throw new IllegalArgumentException(String.format("TLV-LENGTH %s exceeds maxFrameSize %s", Long.toUnsignedString(length), this.maxFrameSize));
+        }
+        return (int) frameSize;
+    }
+
+    /**
+     * 已缓存、尚未输出的字节数
+     *
+     * @return
+     */
+    public int buffered() {
+        return this.buf.remaining();
+    }
+
+    public boolean eof() {
+        return this.eof;
+    }
+
+    private TLV end() throws EOFException {
+        this.eof = true;
+        if (this.buf.hasRemaining()) {
+            throw new EOFException(String.format("stream ended inside a TLV, %s bytes buffered", this.buf.remaining()));
+        }
+        return null;
+    }
+
+    private void fill(ByteBuffer chunk) {
+        this.buf.compact();
+        int n = Math.min(chunk.remaining(), this.buf.remaining());
+        ByteBuffer part = chunk.duplicate();
+        part.limit(part.position() + n);
+        this.buf.put(part);
+        chunk.position(chunk.position() + n);
+        this.buf.flip();
+    }
+
+    /**
+     * 下一个 TLV 比缓冲区大时扩容，最多扩到 maxFrameSize
+     */
+    private void ensureCapacity() {
+        int frameSize = frameSize();
+        if (frameSize <= this.buf.capacity()) {
+            return;
+        }
+
+        int newCapacity = (int) Math.min(Math.max((long) this.buf.capacity() << 1, frameSize), this.maxFrameSize);
+        ByteBuffer expandBuffer = ByteBuffer.allocate(newCapacity);
+        expandBuffer.put(this.buf);
+        expandBuffer.flip();
+        this.buf = expandBuffer;
+    }
+}
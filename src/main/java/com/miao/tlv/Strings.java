@@ -63,15 +63,9 @@ public class Strings {
             return null;
         }
 
-        int position = buffer.position();
-        int remaining = buffer.remaining();
-
-        byte[] remainBytes = new byte[remaining];
-        byte[] bytes = buffer.array();
-        for (int i = position, j = 0; i < bytes.length; i++, j++) {
-            remainBytes[j] = bytes[i];
-        }
-
+        // duplicate 读取，兼容切片（arrayOffset）和只读 buffer，且不改变原 buffer 的 position
+        byte[] remainBytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(remainBytes);
         return remainBytes;
     }
 
@@ -81,6 +75,10 @@ public class Strings {
     }
 
     public static int sizeofVarNum(long n) {
+        // 负数按无符号 64-bit 处理
+        if (n < 0) {
+            return 9;
+        }
         // 253
         if (n < 0xFD) {
             return 1;
@@ -90,9 +88,32 @@ public class Strings {
             return 3;
         }
         // 4294967295
-        if (n <= 0xFFFFFFFF) {
+        if (n <= 0xFFFFFFFFL) {
             return 5;
         }
-        throw new IllegalArgumentException("VAR-NUMBER is too large");
+        return 9;
+    }
+
+    /**
+     * 在 buffer 的 position 处按指定宽度写入 VAR-NUMBER，宽度大于 sizeofVarNum(n) 时为非最短编码
+     *
+     * @param buffer
+     * @param n
+     * @param size   1 / 3 / 5 / 9
+     */
+    public static void putVarNum(ByteBuffer buffer, long n, int size) {
+        switch (size) {
+            case 1:
+                buffer.put((byte) n);
+                break;
+            case 3:
+                buffer.put((byte) 0xFD).putShort((short) n);
+                break;
+            case 5:
+                buffer.put((byte) 0xFE).putInt((int) n);
+                break;
+            default:
+                buffer.put((byte) 0xFF).putLong(n);
+        }
     }
 }
@@ -1,12 +1,12 @@
 package com.miao.tlv;
 
 import com.google.common.collect.Lists;
+import com.miao.tlv.nni.Nni;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.List;
 
 @NoArgsConstructor
@@ -39,6 +39,13 @@ public class TLV {
     @Getter
     private Decoder decoder;
 
+    /**
+     * zero-copy 解码得到的 TLV 保留原始的编码字节（整个 TLV），编码时整体拷贝；addChildTLV 后失效
+     * <p>
+     * 只在 valueBuf 只读时使用，可写的 valueBuf 可能被修改，按字段重新编码
+     */
+    private ByteBuffer encoded;
+
     // 在扩展的编码实现（Encodable）中，需要增加校验，某些类型的数据，不进行编码
 
     public TLV(long type, int length) {
@@ -68,7 +75,7 @@ public class TLV {
 
     public TLV(long type, ByteBuffer valueBuf) {
         this.type = type;
-        this.length = length;
+        this.length = valueBuf == null ? 0 : valueBuf.remaining();
         this.valueBuf = valueBuf;
     }
 
@@ -79,27 +86,104 @@ public class TLV {
         this.decoder = decoder;
     }
 
+    TLV(long type, int length, ByteBuffer valueBuf, Decoder decoder, ByteBuffer encoded) {
+        this(type, length, valueBuf, decoder);
+        this.encoded = encoded;
+    }
+
+    /**
+     * 原始的编码字节（只读视图），没有或已失效时返回 null
+     * <p>
+     * valueBuf 可写，或 valueBuf 的 [position, limit) 被改变（例如读取了一部分）时不再使用原始字节。
+     */
+    ByteBuffer encodedSlice() {
+        if (this.encoded == null || this.tlvList != null) {
+            return null;
+        }
+        if (this.valueBuf != null && !this.valueBuf.isReadOnly()) {
+            return null;
+        }
+        int valueSize = this.valueBuf == null ? 0 : this.valueBuf.remaining();
+        if (valueSize != this.length) {
+            return null;
+        }
+        return this.encoded.duplicate();
+    }
+
     public byte[] getValue() {
         return Strings.getRemainBytes(valueBuf);
     }
 
+    /**
+     * 把 TLV-VALUE 按 NNI 解码，直接读取 valueBuf，不拷贝
+     *
+     * @return
+     * @throws IllegalArgumentException TLV-VALUE 不是 1 / 2 / 4 / 8 字节
+     */
+    public long nniValue() {
+        if (this.valueBuf == null) {
+            throw new IllegalArgumentException(String.format("TLV %s has no TLV-VALUE", this.type));
+        }
+        return Nni.decodeLong(this.valueBuf, this.valueBuf.position(), this.valueBuf.remaining());
+    }
+
+    /**
+     * 把 TLV-VALUE 按无符号 64-bit NNI 解码，2^63 ~ 2^64-1 返回负数（使用 Long.toUnsignedString 等方法处理）
+     *
+     * @return
+     */
+    public long unsignedNniValue() {
+        if (this.valueBuf == null) {
+            throw new IllegalArgumentException(String.format("TLV %s has no TLV-VALUE", this.type));
+        }
+        return Nni.decodeUnsignedLong(this.valueBuf, this.valueBuf.position(), this.valueBuf.remaining());
+    }
+
+    /**
+     * 把 TLV-VALUE 解析为子 TLV 列表，TLV-VALUE 为空时返回 null
+     * <p>
+     * 一次校验整个嵌套结构使用 {@link TlvValidator}。
+     *
+     * @return
+     * @throws IllegalArgumentException TLV-VALUE 不是完整的 TLV 序列（叶子节点或被截断），valueBuf 的 position 不变
+     */
     public List<TLV> getChildTlvList() {
         if (this.valueBuf == null || this.valueBuf.remaining() == 0) {
             return null;
         }
 
+        int start = valueBuf.position();
         List<TLV> tlvList = Lists.newArrayList();
         while (valueBuf.position() < valueBuf.limit()) {
-            int type = readVarNum();
-            int length = readVarNum();
+            int offsetT = valueBuf.position();
+            int sizeofT = Decoder.sizeofVarNum(valueBuf.get(offsetT));
+            if (offsetT + sizeofT >= valueBuf.limit()
+                    || offsetT + sizeofT + Decoder.sizeofVarNum(valueBuf.get(offsetT + sizeofT)) > valueBuf.limit()) {
+                valueBuf.position(start);
+                throw new IllegalArgumentException(String.format("TLV-VALUE of %s is not a TLV sequence, truncated child header at offset %s",
+                        this.type, offsetT - start));
+            }
 
-            // TODO 此处有bug
-            if (valueBuf.remaining() < length) {
-                break;
+            long type = readVarNum();
+            long tlvLength = readVarNum();
+
+            // 不返回只解析了一部分的子 TLV
+            if (tlvLength < 0 || valueBuf.remaining() < tlvLength) {
+                int remaining = valueBuf.remaining();
+                valueBuf.position(start);
+                throw new IllegalArgumentException(String.format("TLV-VALUE of %s is not a TLV sequence, child TLV-LENGTH %s exceeds remaining %s",
+                        this.type, Long.toUnsignedString(tlvLength), remaining));
             }
+            int length = (int) tlvLength;
 
             if (length == 0) {
                 tlvList.add(new TLV(type, length));
+            } else if (isZeroCopy()) {
+                ByteBuffer value = valueBuf.slice();
+                value.limit(length);
+                valueBuf.position(valueBuf.position() + length);
+                ByteBuffer tlvBuf = slice(offsetT, valueBuf.position()).asReadOnlyBuffer();
+                tlvList.add(new TLV(type, length, value, new Decoder(tlvBuf).setZeroCopy(true), tlvBuf));
             } else {
                 byte[] value = new byte[length];
                 valueBuf.get(value);
@@ -107,7 +191,7 @@ public class TLV {
             }
         }
 
-        this.valueBuf.flip();
+        this.valueBuf.position(start);
         return tlvList;
     }
 
@@ -123,25 +207,15 @@ public class TLV {
 //        return new TLV(type, ByteBuffer.wrap(value));
 //    }
 
-    public int readVarNum() {
+    public long readVarNum() {
         if (valueBuf.position() >= valueBuf.limit()) {
             return 0;
         }
 
-        int firstOctet = (int) valueBuf.get() & 0XFF;
-        if (firstOctet < 0XFD) {
-            return firstOctet;
-        } else if (firstOctet == 0XFD) {
-            return (((int) valueBuf.get() & 0XFF) << 8)
-                    + ((int) valueBuf.get() & 0XFF);
-        } else if (firstOctet == 0XFE) {
-            return (((int) valueBuf.get() & 0XFF) << 24)
-                    + (((int) valueBuf.get() & 0XFF) << 16)
-                    + (((int) valueBuf.get() & 0XFF) << 8)
-                    + ((int) valueBuf.get() & 0XFF);
-        }
-
-        throw new RuntimeException(" 64-bit VAR-NUMBER is not supported");
+        int index = valueBuf.position();
+        long n = Decoder.getVarNum(valueBuf, index);
+        valueBuf.position(index + Decoder.sizeofVarNum(valueBuf.get(index)));
+        return n;
     }
 
     public int addChildTLV(TLV tlv) {
@@ -151,17 +225,24 @@ public class TLV {
 
         this.tlvList.add(tlv);
         this.valueBuf = null;
+        this.encoded = null;
         return tlv.getTlvSize();
     }
 
     public int getTlvSize() {
-        int typeLengthSize = Strings.sizeofVarNum(this.type) + Strings.sizeofVarNum(this.length);
+        ByteBuffer encoded = encodedSlice();
+        if (encoded != null) {
+            return encoded.remaining();
+        }
 
         if (this.tlvList == null) {
+            // 与 Encoder 写入的 TLV-LENGTH 一致，使用 getLength()（valueBuf.remaining()）而不是构造时的 length
+            int typeLengthSize = Strings.sizeofVarNum(this.type) + Strings.sizeofVarNum(getLength());
             int bufSize = this.valueBuf == null ? 0 : this.valueBuf.remaining();
             return typeLengthSize + bufSize;
         }
-        return typeLengthSize + getTlvSize(this.tlvList);
+        int childrenSize = getTlvSize(this.tlvList);
+        return Strings.sizeofVarNum(this.type) + Strings.sizeofVarNum(childrenSize) + childrenSize;
     }
 
 
@@ -169,7 +250,21 @@ public class TLV {
         if(this.valueBuf == null){
             this.valueBuf = ByteBuffer.wrap(new byte[0]);
         }
-        return new Decoder(this.valueBuf.array());
+        return new Decoder(this.valueBuf).setZeroCopy(isZeroCopy());
+    }
+
+    private ByteBuffer slice(int from, int to) {
+        ByteBuffer window = this.valueBuf.duplicate();
+        window.limit(to);
+        window.position(from);
+        return window.slice();
+    }
+
+    /**
+     * valueBuf 是否为 zero-copy 解码得到的只读切片
+     */
+    private boolean isZeroCopy() {
+        return this.decoder != null && this.decoder.isZeroCopy();
     }
 
     private int getTlvSize(List<TLV> tlvList) {
@@ -179,6 +274,12 @@ public class TLV {
 
         int tlvSize = 0;
         for (TLV tlv : tlvList) {
+            ByteBuffer encoded = tlv.encodedSlice();
+            if (encoded != null) {
+                tlvSize += encoded.remaining();
+                continue;
+            }
+
             int typeLengthSize = Strings.sizeofVarNum(tlv.getType()) + Strings.sizeofVarNum(tlv.getLength());
             tlvSize += typeLengthSize;
             if (tlv.getTlvList() == null || tlv.getTlvList().size() == 0) {
@@ -193,8 +294,8 @@ public class TLV {
 
     public int getLength() {
         if (this.tlvList != null && this.tlvList.size() > 0) {
-            int tlvSize = getTlvSize();
-            return tlvSize - Strings.sizeofVarNum(this.type) - Strings.sizeofVarNum(tlvSize);
+            // TLV-VALUE 为所有子 TLV 的字节数
+            return getTlvSize(this.tlvList);
         } else if (this.valueBuf != null) {
             return this.valueBuf.remaining();
         }
@@ -207,7 +308,7 @@ public class TLV {
         return "EncodeTlv{" +
                 "type=" + this.type +
                 ", length=" + this.length +
-                ", buf=" + (this.valueBuf == null ? "null" : Arrays.toString(valueBuf.array())) +
+                ", buf=" + (this.valueBuf == null ? "null" : Strings.getRemainBytesString(valueBuf)) +
                 '}';
     }
 
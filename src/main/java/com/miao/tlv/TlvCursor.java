@@ -0,0 +1,238 @@
+package com.miao.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 可复用的 TLV 游标（flyweight），在 buffer 上按 TLV-TYPE / TLV-LENGTH 逐个遍历元素
+ * <p>
+ * 只记录 type、length、offset 等基本类型，遍历过程中不分配任何对象，适合只需要判断类型、跳过元素的路由和过滤场景。
+ * 所有 offset 都是 buffer 上的绝对下标。
+ * <pre>
+ * cursor.reset(buf);
+ * while (cursor.next()) {
+ *     if (cursor.type() == 0xC0) {
+ *         cursor.enterChildren();
+ *         while (cursor.next()) { ... }
+ *         cursor.skipRemaining();
+ *     }
+ * }
+ * </pre>
+ */
+public class TlvCursor {
+
+    private ByteBuffer buf;
+
+    /**
+     * 当前层级的结束位置
+     */
+    private int levelEnd;
+
+    /**
+     * 下一个元素的起始位置
+     */
+    private int nextOffset;
+
+    /**
+     * 当前元素
+     */
+    private int offset = -1;
+    private long type;
+    private int length;
+    private int valueOffset;
+
+    /**
+     * enterChildren 时保存父元素的起始位置和父层级的结束位置
+     */
+    private int[] parentOffsets = new int[8];
+    private int[] parentLevelEnds = new int[8];
+    private int depth = 0;
+
+    public TlvCursor() {
+    }
+
+    public TlvCursor(ByteBuffer buf) {
+        reset(buf);
+    }
+
+    /**
+     * 遍历 buf 的 [position, limit)，不改变 buf 的 position
+     *
+     * @param buf
+     * @return this
+     */
+    public TlvCursor reset(ByteBuffer buf) {
+        return reset(buf, buf.position(), buf.limit());
+    }
+
+    /**
+     * 遍历 buf 的 [from, to)
+     *
+     * @param buf
+     * @param from
+     * @param to
+     * @return this
+     */
+    public TlvCursor reset(ByteBuffer buf, int from, int to) {
+        this.buf = buf;
+        this.nextOffset = from;
+        this.levelEnd = to;
+        this.offset = -1;
+        this.depth = 0;
+        return this;
+    }
+
+    /**
+     * 移动到当前层级的下一个元素
+     *
+     * @return 当前层级没有更多元素时返回 false
+     */
+    public boolean next() {
+        if (this.nextOffset >= this.levelEnd) {
+            this.offset = -1;
+            return false;
+        }
+
+        readHeader(this.nextOffset, this.levelEnd);
+        if (this.length < 0 || this.length > this.levelEnd - this.valueOffset) {
+            throw new IllegalArgumentException(String.format("TLV-LENGTH %s at offset %s exceeds enclosing element", this.length, this.offset));
+        }
+        this.nextOffset = this.valueOffset + this.length;
+        return true;
+    }
+
+    /**
+     * 当前元素的 TLV-VALUE 是否为完整的 TLV 序列（只检查一层子元素的 TLV-TYPE / TLV-LENGTH），不移动游标
+     * <p>
+     * 叶子元素的 TLV-VALUE 通常不能解析为 TLV 序列，进入前先判断可以避免 {@link #next()} 抛出异常
+     *
+     * @return
+     */
+    public boolean hasChildren() {
+        checkElement();
+        int end = this.valueOffset + this.length;
+        int offset = this.valueOffset;
+        while (offset < end) {
+            int sizeofT = Decoder.sizeofVarNum(this.buf.get(offset));
+            if (offset + sizeofT >= end) {
+                return false;
+            }
+            int sizeofL = Decoder.sizeofVarNum(this.buf.get(offset + sizeofT));
+            if (offset + sizeofT + sizeofL > end) {
+                return false;
+            }
+            long length = Decoder.getVarNum(this.buf, offset + sizeofT);
+            int childValueOffset = offset + sizeofT + sizeofL;
+            if (length < 0 || length > end - childValueOffset) {
+                return false;
+            }
+            offset = childValueOffset + (int) length;
+        }
+        return true;
+    }
+
+    /**
+     * 进入当前元素的 TLV-VALUE，之后 {@link #next()} 遍历它的子元素
+     */
+    public void enterChildren() {
+        checkElement();
+        if (this.depth == this.parentOffsets.length) {
+            this.parentOffsets = Arrays.copyOf(this.parentOffsets, this.depth << 1);
+            this.parentLevelEnds = Arrays.copyOf(this.parentLevelEnds, this.depth << 1);
+        }
+
+        this.parentOffsets[this.depth] = this.offset;
+        this.parentLevelEnds[this.depth] = this.levelEnd;
+        this.depth++;
+
+        this.levelEnd = this.valueOffset + this.length;
+        this.nextOffset = this.valueOffset;
+        this.offset = -1;
+    }
+
+    /**
+     * 跳过当前层级剩余的元素，回到父元素上；在顶层调用时跳到末尾
+     * <p>
+     * 只跳过当前元素时直接调用 {@link #next()}，不需要进入子元素
+     */
+    public void skipRemaining() {
+        if (this.depth == 0) {
+            this.nextOffset = this.levelEnd;
+            this.offset = -1;
+            return;
+        }
+
+        this.depth--;
+        this.levelEnd = this.parentLevelEnds[this.depth];
+        readHeader(this.parentOffsets[this.depth], this.levelEnd);
+        this.nextOffset = this.valueOffset + this.length;
+    }
+
+    public long type() {
+        checkElement();
+        return this.type;
+    }
+
+    public int length() {
+        checkElement();
+        return this.length;
+    }
+
+    /**
+     * 当前元素 TLV-VALUE 的起始位置
+     */
+    public int valueOffset() {
+        checkElement();
+        return this.valueOffset;
+    }
+
+    /**
+     * 当前元素（含 TLV-TYPE）的起始位置
+     */
+    public int offset() {
+        checkElement();
+        return this.offset;
+    }
+
+    /**
+     * 当前元素的结束位置（不含）
+     */
+    public int endOffset() {
+        checkElement();
+        return this.valueOffset + this.length;
+    }
+
+    /**
+     * 当前的嵌套深度，顶层为 0
+     */
+    public int depth() {
+        return this.depth;
+    }
+
+    public ByteBuffer buffer() {
+        return this.buf;
+    }
+
+    private void readHeader(int offset, int end) {
+        int sizeofT = Decoder.sizeofVarNum(this.buf.get(offset));
+        if (offset + sizeofT >= end) {
+            throw new IllegalArgumentException(String.format("truncated TLV-TYPE at offset %s", offset));
+        }
+        int sizeofL = Decoder.sizeofVarNum(this.buf.get(offset + sizeofT));
+        if (offset + sizeofT + sizeofL > end) {
+            throw new IllegalArgumentException(String.format("truncated TLV-LENGTH at offset %s", offset));
+        }
+        this.offset = offset;
+        this.type = Decoder.getVarNum(this.buf, offset);
+        long length = Decoder.getVarNum(this.buf, offset + sizeofT);
+        // 超过 int 的 TLV-LENGTH 不可能在一个 ByteBuffer 中
+        this.length = length < 0 || length > Integer.MAX_VALUE ? -1 : (int) length;
+        this.valueOffset = offset + sizeofT + sizeofL;
+    }
+
+    private void checkElement() {
+        if (this.offset < 0) {
+            throw new IllegalStateException("cursor is not positioned on an element");
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.miao.tlv;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TLV 文件的偏移索引（sidecar 文件），支持按序号 O(1) 定位顶层 TLV
+ * <p>
+ * 索引文件格式：
+ * <pre>
+ * header: magic(4) | version(4) | data file size(8) | data file mtime(8) | count(8)
+ * record: ordinal(8) | offset(8) | type(8) | length(8)
+ * </pre>
+ * 记录定长，第 N 个记录位于 header 之后的 N * 32 字节处。
+ */
+public class TlvIndex implements Closeable {
+
+    public static final String _SIDECAR_SUFFIX = ".idx";
+
+    private static final String _TMP_SUFFIX = ".tmp";
+
+    private static final int _MAGIC = 0x544C5649;
+
+    private static final int _VERSION = 2;
+
+    private static final int _HEADER_SIZE = 32;
+
+    private static final int _RECORD_SIZE = 32;
+
+    private static final int _BATCH_RECORDS = 2048;
+
+    private final Path dataPath;
+
+    private final FileChannel indexChannel;
+
+    private final long dataSize;
+
+    private final long count;
+
+    private FileChannel dataChannel;
+
+    private TlvIndex(Path dataPath, FileChannel indexChannel, long dataSize, long count) {
+        this.dataPath = dataPath;
+        this.indexChannel = indexChannel;
+        this.dataSize = dataSize;
+        this.count = count;
+    }
+
+    /**
+     * 默认的 sidecar 路径：数据文件名 + .idx
+     *
+     * @param dataPath
+     * @return
+     */
+    public static Path sidecarOf(Path dataPath) {
+        return Paths.get(dataPath.toString() + _SIDECAR_SUFFIX);
+    }
+
+    public static TlvIndex build(Path dataPath) throws IOException {
+        return build(dataPath, sidecarOf(dataPath));
+    }
+
+    /**
+     * 扫描一遍数据文件，只读取每个顶层 TLV 的 TLV-TYPE / TLV-LENGTH，生成索引文件
+     * <p>
+     * 索引先写到同目录的临时文件，扫描成功后再替换 indexPath；数据文件截断时抛出 EOFException，已有的索引不受影响。
+     *
+     * @param dataPath  数据文件
+     * @param indexPath 索引文件，已存在时覆盖
+     * @return 打开的索引
+     */
+    public static TlvIndex build(Path dataPath, Path indexPath) throws IOException {
+        Path tmpPath = Paths.get(indexPath.toString() + _TMP_SUFFIX);
+        try {
+            writeIndex(dataPath, tmpPath);
+            try {
+                Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+        return open(dataPath, indexPath);
+    }
+
+    private static void writeIndex(Path dataPath, Path indexPath) throws IOException {
+        long count = 0;
+        // 扫描前取修改时间，扫描过程中文件被修改时 open 会判定为过期
+        long modified = Files.getLastModifiedTime(dataPath).toMillis();
+        try (MappedTlvReader reader = new MappedTlvReader(dataPath);
+             FileChannel out = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer batch = ByteBuffer.allocate(_BATCH_RECORDS * _RECORD_SIZE);
+            out.position(_HEADER_SIZE);
+
+            TlvRegion region = null;
+            while ((region = reader.readRegion()) != null) {
+                batch.putLong(count++);
+                batch.putLong(region.getOffset());
+                batch.putLong(region.getType());
+                batch.putLong(region.getLength());
+
+                if (!batch.hasRemaining()) {
+                    writeFully(out, batch);
+                }
+            }
+            writeFully(out, batch);
+
+            ByteBuffer header = ByteBuffer.allocate(_HEADER_SIZE);
+            header.putInt(_MAGIC).putInt(_VERSION).putLong(reader.size()).putLong(modified).putLong(count);
+            header.flip();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+        }
+    }
+
+    public static TlvIndex open(Path dataPath) throws IOException {
+        return open(dataPath, sidecarOf(dataPath));
+    }
+
+    /**
+     * 打开已有的索引文件，数据文件大小或修改时间与建索引时不一致时抛出 IllegalStateException
+     *
+     * @param dataPath
+     * @param indexPath
+     * @return
+     */
+    public static TlvIndex open(Path dataPath, Path indexPath) throws IOException {
+        FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readAt(channel, 0, _HEADER_SIZE);
+            if (header.getInt() != _MAGIC || header.getInt() != _VERSION) {
+                throw new IllegalStateException(String.format("%s is not a TLV index file", indexPath));
+            }
+
+            long dataSize = header.getLong();
+            long modified = header.getLong();
+            long count = header.getLong();
+            if (dataSize != Files.size(dataPath) || modified != Files.getLastModifiedTime(dataPath).toMillis()) {
+                throw new IllegalStateException(String.format("index %s is stale for %s", indexPath, dataPath));
+            }
+            return new TlvIndex(dataPath, channel, dataSize, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 顶层 TLV 的个数
+     */
+    public long size() {
+        return this.count;
+    }
+
+    /**
+     * 第 ordinal 个顶层 TLV 的索引记录，O(1)
+     *
+     * @param ordinal 从 0 开始
+     * @return
+     */
+    public Entry get(long ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= this.count) {
+            throw new IndexOutOfBoundsException(String.format("ordinal %s is out of %s", ordinal, this.count));
+        }
+
+        ByteBuffer record = readAt(this.indexChannel, _HEADER_SIZE + ordinal * _RECORD_SIZE, _RECORD_SIZE);
+        return new Entry(record.getLong(), record.getLong(), record.getLong(), record.getLong());
+    }
+
+    /**
+     * 第一个 TLV-TYPE 为 type 的顶层 TLV，只扫描索引文件
+     *
+     * @param type
+     * @return 不存在时返回 null
+     */
+    public Entry firstOfType(long type) throws IOException {
+        for (long ordinal = 0; ordinal < this.count; ordinal += _BATCH_RECORDS) {
+            int records = (int) Math.min(_BATCH_RECORDS, this.count - ordinal);
+            ByteBuffer batch = readAt(this.indexChannel, _HEADER_SIZE + ordinal * _RECORD_SIZE, records * _RECORD_SIZE);
+            for (int i = 0; i < records; i++) {
+                int base = i * _RECORD_SIZE;
+                if (batch.getLong(base + 16) == type) {
+                    return new Entry(batch.getLong(base), batch.getLong(base + 8), batch.getLong(base + 16), batch.getLong(base + 24));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 打开一个只包含第 ordinal 个顶层 TLV 的 Decoder，O(1)
+     * <p>
+     * Decoder 基于数据文件的内存映射（zero-copy），只映射该 TLV 的 [offset, 下一个 TLV 的 offset)。
+     * 映射要等 GC 才释放，所以不会映射到文件末尾；顺序读取后续的 TLV 使用 {@link MappedTlvReader}。
+     *
+     * @param ordinal
+     * @return
+     */
+    public Decoder openDecoder(long ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= this.count) {
+            throw new IndexOutOfBoundsException(String.format("ordinal %s is out of %s", ordinal, this.count));
+        }
+
+        // 当前记录和下一个记录的 offset，最后一个 TLV 到数据文件末尾
+        int records = ordinal + 1 < this.count ? 2 : 1;
+        ByteBuffer batch = readAt(this.indexChannel, _HEADER_SIZE + ordinal * _RECORD_SIZE, records * _RECORD_SIZE);
+        long offset = batch.getLong(8);
+        long end = records == 2 ? batch.getLong(_RECORD_SIZE + 8) : this.dataSize;
+        if (end - offset > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format("TLV at ordinal %s is larger than 2GB", ordinal));
+        }
+        return new Decoder(dataChannel().map(FileChannel.MapMode.READ_ONLY, offset, end - offset)).setZeroCopy(true);
+    }
+
+    private FileChannel dataChannel() throws IOException {
+        if (this.dataChannel == null) {
+            this.dataChannel = FileChannel.open(this.dataPath, StandardOpenOption.READ);
+        }
+        return this.dataChannel;
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException(String.format("index file is truncated at %s", position + buf.position()));
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.indexChannel.close();
+        if (this.dataChannel != null) {
+            this.dataChannel.close();
+        }
+    }
+
+    /**
+     * 索引记录
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final long ordinal;
+        private final long offset;
+        private final long type;
+        private final long length;
+    }
+}
@@ -0,0 +1,171 @@
+package com.miao.tlv;
+
+import com.google.common.collect.Lists;
+import com.miao.tlv.nni.Nni;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * 编译后的 TLV 路径表达式，直接在编码后的字节上按路径查找，不构造 TLV 树
+ * <p>
+ * 路径由 "/" 分隔的十六进制 TLV-TYPE 组成，例如 "A0/C0/C1" 或 "0xA0/0xC0/0xC1"，"*" 匹配任意 TLV-TYPE。
+ * 不匹配的兄弟元素按 TLV-LENGTH 直接跳过；中间一级匹配到的元素的 TLV-VALUE 不是 TLV 序列（叶子）时视为不匹配。
+ */
+public class TlvPath {
+
+    private static final long _ANY = -1;
+
+    private final String expression;
+
+    private final long[] types;
+
+    private TlvPath(String expression, long[] types) {
+        this.expression = expression;
+        this.types = types;
+    }
+
+    /**
+     * 编译路径表达式
+     *
+     * @param expression 例如 "A0/C0/C1"
+     * @return
+     */
+    public static TlvPath compile(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("path expression should not be empty");
+        }
+
+        String[] segments = expression.trim().split("/");
+        long[] types = new long[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i].trim();
+            if ("*".equals(segment)) {
+                types[i] = _ANY;
+                continue;
+            }
+            if (segment.startsWith("0x") || segment.startsWith("0X")) {
+                segment = segment.substring(2);
+            }
+            try {
+                types[i] = Long.parseLong(segment, 16);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("invalid TLV-TYPE '%s' in path %s", segments[i], expression));
+            }
+        }
+        return new TlvPath(expression, types);
+    }
+
+    /**
+     * 第一个匹配元素的 TLV-VALUE
+     *
+     * @param input 编码后的 TLV，读取 [position, limit)
+     * @return TLV-VALUE 的只读切片，未找到时返回 null
+     */
+    public ByteBuffer first(ByteBuffer input) {
+        TlvCursor cursor = new TlvCursor(input);
+        if (!find(cursor, 0)) {
+            return null;
+        }
+        return slice(input, cursor.valueOffset(), cursor.length());
+    }
+
+    public ByteBuffer first(byte[] input) {
+        return first(ByteBuffer.wrap(input));
+    }
+
+    /**
+     * 所有匹配元素的 TLV-VALUE，按出现顺序
+     *
+     * @param input
+     * @return
+     */
+    public List<ByteBuffer> all(ByteBuffer input) {
+        List<ByteBuffer> values = Lists.newArrayList();
+        collect(new TlvCursor(input), 0, values);
+        return values;
+    }
+
+    public List<ByteBuffer> all(byte[] input) {
+        return all(ByteBuffer.wrap(input));
+    }
+
+    /**
+     * 第一个匹配元素的 TLV-VALUE 按 NNI 解码
+     *
+     * @param input
+     * @return 未找到时返回 OptionalLong.empty()
+     * @throws IllegalArgumentException TLV-VALUE 不是 NNI
+     */
+    public OptionalLong firstNni(ByteBuffer input) {
+        TlvCursor cursor = new TlvCursor(input);
+        if (!find(cursor, 0)) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(Nni.decodeLong(input, cursor.valueOffset(), cursor.length()));
+    }
+
+    public OptionalLong firstNni(byte[] input) {
+        return firstNni(ByteBuffer.wrap(input));
+    }
+
+    /**
+     * 深度优先查找，cursor 停在第一个匹配的元素上
+     */
+    private boolean find(TlvCursor cursor, int level) {
+        while (cursor.next()) {
+            if (!matches(cursor.type(), level)) {
+                continue;
+            }
+            if (level == this.types.length - 1) {
+                return true;
+            }
+
+            if (!cursor.hasChildren()) {
+                continue;
+            }
+            cursor.enterChildren();
+            if (find(cursor, level + 1)) {
+                return true;
+            }
+            cursor.skipRemaining();
+        }
+        return false;
+    }
+
+    private void collect(TlvCursor cursor, int level, List<ByteBuffer> values) {
+        while (cursor.next()) {
+            if (!matches(cursor.type(), level)) {
+                continue;
+            }
+            if (level == this.types.length - 1) {
+                values.add(slice(cursor.buffer(), cursor.valueOffset(), cursor.length()));
+                continue;
+            }
+
+            if (!cursor.hasChildren()) {
+                continue;
+            }
+            cursor.enterChildren();
+            collect(cursor, level + 1, values);
+            cursor.skipRemaining();
+        }
+    }
+
+    private boolean matches(long type, int level) {
+        return this.types[level] == _ANY || this.types[level] == type;
+    }
+
+    private ByteBuffer slice(ByteBuffer input, int offset, int length) {
+        ByteBuffer window = input.duplicate();
+        window.limit(offset + length);
+        window.position(offset);
+        return window.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public String toString() {
+        return "TlvPath{" + this.expression + '}';
+    }
+}
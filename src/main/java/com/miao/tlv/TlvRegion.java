@@ -0,0 +1,130 @@
+package com.miao.tlv;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 文件中一个 TLV 的区域，TLV-LENGTH 为 long，TLV-VALUE 以流的方式读取，不加载到内存
+ * <p>
+ * 由 {@link MappedTlvReader#readRegion()} 返回，在 reader 关闭之前有效。
+ */
+public class TlvRegion {
+
+    private final FileChannel channel;
+
+    @Getter
+    private final long type;
+
+    @Getter
+    private final long length;
+
+    /**
+     * TLV（含 TLV-TYPE）在文件中的偏移
+     */
+    @Getter
+    private final long offset;
+
+    /**
+     * TLV-VALUE 在文件中的偏移
+     */
+    @Getter
+    private final long valueOffset;
+
+    TlvRegion(FileChannel channel, long type, long length, long offset, long valueOffset) {
+        this.channel = channel;
+        this.type = type;
+        this.length = length;
+        this.offset = offset;
+        this.valueOffset = valueOffset;
+    }
+
+    /**
+     * TLV 的总字节数
+     */
+    public long getTlvSize() {
+        return this.valueOffset - this.offset + this.length;
+    }
+
+    /**
+     * 以 channel 的方式读取 TLV-VALUE，每次读取都是对文件的定位读，不改变 reader 的状态
+     *
+     * @return
+     */
+    public ReadableByteChannel openValueChannel() {
+        return new ReadableByteChannel() {
+            private long position = 0;
+            private boolean open = true;
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (this.position >= length) {
+                    return -1;
+                }
+
+                ByteBuffer window = dst;
+                long remaining = length - this.position;
+                if (dst.remaining() > remaining) {
+                    window = dst.duplicate();
+                    window.limit(window.position() + (int) remaining);
+                }
+
+                int n = channel.read(window, valueOffset + this.position);
+                if (n > 0) {
+                    this.position += n;
+                    if (window != dst) {
+                        dst.position(dst.position() + n);
+                    }
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return this.open;
+            }
+
+            @Override
+            public void close() {
+                this.open = false;
+            }
+        };
+    }
+
+    public InputStream openValueStream() {
+        return Channels.newInputStream(openValueChannel());
+    }
+
+    /**
+     * 把 TLV-VALUE 写到 target，使用 FileChannel.transferTo，数据不经过堆内存
+     *
+     * @param target
+     * @return 写出的字节数
+     */
+    public long transferValueTo(WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < this.length) {
+            long n = this.channel.transferTo(this.valueOffset + transferred, this.length - transferred, target);
+            if (n <= 0) {
+                break;
+            }
+            transferred += n;
+        }
+        return transferred;
+    }
+
+    @Override
+    public String toString() {
+        return "TlvRegion{" +
+                "type=" + this.type +
+                ", length=" + this.length +
+                ", offset=" + this.offset +
+                '}';
+    }
+}
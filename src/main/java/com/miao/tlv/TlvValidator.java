@@ -0,0 +1,162 @@
+package com.miao.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongPredicate;
+
+/**
+ * 一次遍历校验整个 TLV 结构是否合法
+ * <p>
+ * 校验内容：每一层的 TLV-LENGTH 都不超出外层元素、VAR-NUMBER 是最短编码、嵌套深度不超过 maxDepth。
+ * TLV 本身不区分叶子和容器，需要通过 {@link #setContainer(LongPredicate)} 指定哪些 TLV-TYPE 的 TLV-VALUE 是嵌套的 TLV。
+ * {@link #decoder(ByteBuffer)} 先校验整个输入再返回 Decoder，在产生任何解码结果之前就能发现不合法的输入。
+ */
+public class TlvValidator {
+
+    public static final int _DEFAULT_MAX_DEPTH = 32;
+
+    private LongPredicate container = type -> false;
+
+    private int maxDepth = _DEFAULT_MAX_DEPTH;
+
+    private boolean allowNonMinimal = false;
+
+    public TlvValidator setContainer(LongPredicate container) {
+        this.container = container;
+        return this;
+    }
+
+    public TlvValidator setContainerTypes(long... types) {
+        long[] containerTypes = types.clone();
+        this.container = type -> {
+            for (long containerType : containerTypes) {
+                if (containerType == type) {
+                    return true;
+                }
+            }
+            return false;
+        };
+        return this;
+    }
+
+    public TlvValidator setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * 是否允许非最短编码的 VAR-NUMBER（例如预留长度后回填的 TLV-LENGTH）
+     *
+     * @param allowNonMinimal
+     * @return
+     */
+    public TlvValidator setAllowNonMinimal(boolean allowNonMinimal) {
+        this.allowNonMinimal = allowNonMinimal;
+        return this;
+    }
+
+    /**
+     * 校验 input 的 [position, limit)，不改变 input 的 position
+     *
+     * @param input
+     * @return 校验过的 TLV 个数（含嵌套的 TLV）
+     * @throws IllegalArgumentException 结构不合法
+     */
+    public int validate(ByteBuffer input) {
+        int[] ends = new int[this.maxDepth + 1];
+        int depth = 0;
+        ends[0] = input.limit();
+
+        int count = 0;
+        int offset = input.position();
+        while (true) {
+            int end = ends[depth];
+            if (offset == end) {
+                if (depth == 0) {
+                    return count;
+                }
+                depth--;
+                continue;
+            }
+
+            int sizeofT = Decoder.sizeofVarNum(input.get(offset));
+            if (offset + sizeofT >= end) {
+                throw invalid("truncated TLV-TYPE", offset);
+            }
+            int sizeofL = Decoder.sizeofVarNum(input.get(offset + sizeofT));
+            if (offset + sizeofT + sizeofL > end) {
+                throw invalid("truncated TLV-LENGTH", offset);
+            }
+
+            long type = Decoder.getVarNum(input, offset);
+            long length = Decoder.getVarNum(input, offset + sizeofT);
+            if (!this.allowNonMinimal && (!isMinimal(sizeofT, type) || !isMinimal(sizeofL, length))) {
+                throw invalid("VAR-NUMBER is not minimally encoded", offset);
+            }
+
+            int valueOffset = offset + sizeofT + sizeofL;
+            if (length < 0 || length > end - valueOffset) {
+                throw invalid("TLV-LENGTH exceeds enclosing element", offset);
+            }
+            count++;
+
+            int valueEnd = valueOffset + (int) length;
+            if (length > 0 && this.container.test(type)) {
+                if (depth == this.maxDepth) {
+                    throw invalid(String.format("nesting depth exceeds %s", this.maxDepth), offset);
+                }
+                ends[++depth] = valueEnd;
+                offset = valueOffset;
+            } else {
+                offset = valueEnd;
+            }
+        }
+    }
+
+    public int validate(byte[] input) {
+        return validate(ByteBuffer.wrap(input));
+    }
+
+    public boolean isValid(ByteBuffer input) {
+        try {
+            validate(input);
+            return true;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 校验 input，通过后返回读取 input 的 Decoder
+     * <p>
+     * 返回的 Decoder 与普通 Decoder 相同，读取时仍然检查 TLV-LENGTH；
+     * 这里只校验了 container 类型的 TLV-VALUE，其他 TLV-VALUE 作为嵌套 TLV 读取时由 Decoder / TLV 自行检查。
+     *
+     * @param input
+     * @return
+     */
+    public Decoder decoder(ByteBuffer input) {
+        validate(input);
+        return new Decoder(input);
+    }
+
+    public Decoder decoder(byte[] input) {
+        return decoder(ByteBuffer.wrap(input));
+    }
+
+    private static boolean isMinimal(int sizeofVarNum, long n) {
+        switch (sizeofVarNum) {
+            case 3:
+                return n >= 0xFD;
+            case 5:
+                return n > 0xFFFF;
+            case 9:
+                return n < 0 || n > 0xFFFFFFFFL;
+            default:
+                return true;
+        }
+    }
+
+    private static IllegalArgumentException invalid(String reason, int offset) {
+        return new IllegalArgumentException(String.format("%s at offset %s", reason, offset));
+    }
+}
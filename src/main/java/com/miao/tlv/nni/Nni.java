@@ -3,6 +3,7 @@ package com.miao.tlv.nni;
 import com.miao.tlv.Commons;
 import com.miao.tlv.Encodable;
 import com.miao.tlv.Encoder;
+import com.miao.tlv.Strings;
 import com.miao.tlv.enums.EncodeNniClass;
 import com.miao.tlv.enums.Len;
 
@@ -10,7 +11,6 @@ import java.math.BigInteger;
 import java.nio.ByteBuffer;
 
 import static com.miao.tlv.Commons.MAX_SAFE_INTEGER;
-import static com.miao.tlv.Commons._NUMBER_FORMAT;
 
 /**
  * 非负整数编解码（ 构造方法 & decode 方法）
@@ -91,6 +91,11 @@ public class Nni {
             }
         }
 
+        if (options != null && options.isUnsigned()) {
+            // 无符号 64-bit，不做 MAX_SAFE_INTEGER 检查
+            return decodeUnsignedLong(buffer);
+        }
+
         if (buffer.remaining() == 8) {
             // bigInteger 类型解码
             Number number = (((long) buffer.get() & 0xff) << 56) +
@@ -187,7 +192,7 @@ public class Nni {
             // 0x100000000L = 4294967296 (42 9496 7296)
             if (bigInt.compareTo(BigInteger.valueOf(0x100000000L)) < 0) {
                 n = bigInt.longValue();
-            } else if (bigInt.compareTo(new BigInteger("18446744073709552000")) <= 0) {  // 0xFFFFFFFFFFFFFFFFn = 18446744073709552000
+            } else if (bigInt.compareTo(Commons.MAX_UNSAFE_INTEGER) <= 0) {  // 0xFFFFFFFFFFFFFFFF = 18446744073709551615
                 return new Nni8Big(bigInt);
             } else {
                 throw new IllegalArgumentException("NNI is too large");
@@ -197,26 +202,181 @@ public class Nni {
         long longValue = n.longValue();
         boolean unsafe = options != null ? options.isUnsafe() : false;
 
+        boolean unsigned = options != null && options.isUnsigned();
+        if (unsigned && longValue < 0) {
+            // 无符号 64-bit 的 2^63 ~ 2^64-1
+            return new Nni8Number(longValue);
+        }
+
         if (longValue < 0) {
             throw new IllegalArgumentException("NNI cannot be negative");
         } else if (longValue < 0x100) { // 0x100 = 256
-            return new Nni1((int) n);
+            return new Nni1((int) longValue);
         } else if (longValue < 0x10000) { // 0x10000 = 65536
-            return new Nni2((int) n);
+            return new Nni2((int) longValue);
         } else if (longValue < 0x100000000L) { // 0x100000000L = 4294967296 , 注 Long.Max_VALUE = 9223372036854775807
             return new Nni4(longValue);
         }
 
-        // 0xFFFFFFFFFFFFFFFFL = 18446744073709552000 为 Long 字节数组的值
-        // Long max: 9223372036854775807, Long min: -9223372036854775808
-        BigInteger bigIntegerNum = new BigInteger(_NUMBER_FORMAT.format(n));
-        if (bigIntegerNum.compareTo(unsafe ? Commons.MAX_UNSAFE_INTEGER : BigInteger.valueOf(Commons.MAX_SAFE_INTEGER)) <= 0) { //  0xFFFFFFFFFFFFFFFF = 18446744073709552000
+        // long 最大为 Long.MAX_VALUE，不超过 MAX_UNSAFE_INTEGER，unsafe 时不需要再比较
+        if (unsafe || unsigned || longValue <= MAX_SAFE_INTEGER) {
             return new Nni8Number(longValue);
         }
 
         throw new IllegalArgumentException("NNI is too large");
     }
 
+    /**
+     * NNI 编码后的字节数（1 / 2 / 4 / 8）
+     *
+     * @param n
+     * @return
+     */
+    public static int sizeOf(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("NNI cannot be negative");
+        } else if (n < 0x100) {
+            return 1;
+        } else if (n < 0x10000) {
+            return 2;
+        } else if (n < 0x100000000L) {
+            return 4;
+        }
+        return 8;
+    }
+
+    /**
+     * 无符号 64-bit NNI 编码后的字节数，负数表示 2^63 ~ 2^64-1
+     *
+     * @param n
+     * @return
+     */
+    public static int sizeOfUnsigned(long n) {
+        return n < 0 ? 8 : sizeOf(n);
+    }
+
+    /**
+     * 直接写入 encoder，不创建 Encodable 对象
+     *
+     * @param encoder
+     * @param n
+     * @return 写入的字节数
+     */
+    public static int writeNni(Encoder encoder, long n) {
+        return writeNni(encoder, n, sizeOf(n));
+    }
+
+    /**
+     * 按无符号 64-bit 写入，负数表示 2^63 ~ 2^64-1
+     *
+     * @param encoder
+     * @param n
+     * @return 写入的字节数
+     */
+    public static int writeUnsignedNni(Encoder encoder, long n) {
+        return writeNni(encoder, n, sizeOfUnsigned(n));
+    }
+
+    private static int writeNni(Encoder encoder, long n, int size) {
+        int position = encoder.getWritePosition(size);
+        ByteBuffer buf = encoder.getWriteTarget();
+        for (int i = size - 1; i >= 0; i--) {
+            buf.put(position + i, (byte) n);
+            n >>>= 8;
+        }
+        return size;
+    }
+
+    /**
+     * 写入 TLV-VALUE 为 NNI 的 TLV，等同于 encoder.prependTlv(type, NNI(n))
+     *
+     * @param encoder
+     * @param type
+     * @param n
+     * @return 写入的字节数
+     */
+    public static int writeNniTlv(Encoder encoder, long type, long n) {
+        return writeNniTlv(encoder, type, n, sizeOf(n));
+    }
+
+    public static int writeUnsignedNniTlv(Encoder encoder, long type, long n) {
+        return writeNniTlv(encoder, type, n, sizeOfUnsigned(n));
+    }
+
+    private static int writeNniTlv(Encoder encoder, long type, long n, int size) {
+        writeNni(encoder, n, size);
+        // getWritePosition 可能扩容，之后再取 writeTarget
+        int position = encoder.getWritePosition(1);
+        encoder.getWriteTarget().put(position, (byte) size);
+
+        int sizeofT = Strings.sizeofVarNum(type);
+        position = encoder.getWritePosition(sizeofT);
+        ByteBuffer typeBuf = encoder.getWriteTarget().duplicate();
+        typeBuf.position(position);
+        Strings.putVarNum(typeBuf, type, sizeofT);
+        return sizeofT + 1 + size;
+    }
+
+    /**
+     * 解码 buffer 的 [position, limit)，完成后 position 移到 limit
+     *
+     * @param buffer
+     * @return
+     */
+    public static long decodeLong(ByteBuffer buffer) {
+        long n = decodeLong(buffer, buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
+        return n;
+    }
+
+    /**
+     * 按绝对下标解码，不改变 buffer 的 position
+     *
+     * @param buffer
+     * @param offset NNI 的起始下标
+     * @param length 1 / 2 / 4 / 8
+     * @return
+     */
+    public static long decodeLong(ByteBuffer buffer, int offset, int length) {
+        long n = decodeUnsignedLong(buffer, offset, length);
+        if (n < 0) {
+            throw new IllegalArgumentException(String.format("NNI is too large %s", Long.toUnsignedString(n)));
+        }
+        return n;
+    }
+
+    /**
+     * 按无符号 64-bit 解码 buffer 的 [position, limit)，2^63 ~ 2^64-1 返回负数，完成后 position 移到 limit
+     *
+     * @param buffer
+     * @return
+     */
+    public static long decodeUnsignedLong(ByteBuffer buffer) {
+        long n = decodeUnsignedLong(buffer, buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
+        return n;
+    }
+
+    /**
+     * 按绝对下标、无符号 64-bit 解码，不改变 buffer 的 position
+     *
+     * @param buffer
+     * @param offset
+     * @param length 1 / 2 / 4 / 8
+     * @return
+     */
+    public static long decodeUnsignedLong(ByteBuffer buffer, int offset, int length) {
+        if (length != 1 && length != 2 && length != 4 && length != 8) {
+            throw new IllegalArgumentException("incorrect TLV-LENGTH of NNI");
+        }
+
+        long n = 0;
+        for (int i = 0; i < length; i++) {
+            n = (n << 8) | (buffer.get(offset + i) & 0xFF);
+        }
+        return n;
+    }
+
     /**
      * Number.MAX_SAFE_INTEGER in ts is 9007199254740991L
      * Long in java max is 9223372036854775807,  min is -9223372036854775808
@@ -233,10 +393,15 @@ class Nni1 implements Encodable {
         this.n = n;
     }
 
+    @Override
+    public int encodedSize() {
+        return EncodeNniClass.Nni1.getIndex();
+    }
+
     @Override
     public void encodeTo(Encoder encoder) {
         int position = encoder.getWritePosition(EncodeNniClass.Nni1.getIndex());
-        encoder.getWriteBuf().put(position, (byte) (n & 0xff));
+        encoder.getWriteTarget().put(position, (byte) (n & 0xff));
     }
 }
 
@@ -247,11 +412,16 @@ class Nni2 implements Encodable {
         this.n = n;
     }
 
+    @Override
+    public int encodedSize() {
+        return EncodeNniClass.Nni2.getIndex();
+    }
+
     @Override
     public void encodeTo(Encoder encoder) {
         int position = encoder.getWritePosition(EncodeNniClass.Nni2.getIndex());
-        encoder.getWriteBuf().put(position, (byte) ((n >> 8) & 0xff));
-        encoder.getWriteBuf().put(position + 1, (byte) (n & 0xff));
+        encoder.getWriteTarget().put(position, (byte) ((n >> 8) & 0xff));
+        encoder.getWriteTarget().put(position + 1, (byte) (n & 0xff));
     }
 
 }
@@ -263,13 +433,18 @@ class Nni4 implements Encodable {
         this.n = n;
     }
 
+    @Override
+    public int encodedSize() {
+        return EncodeNniClass.Nni4.getIndex();
+    }
+
     @Override
     public void encodeTo(Encoder encoder) {
         int position = encoder.getWritePosition(EncodeNniClass.Nni4.getIndex());
-        encoder.getWriteBuf().put(position, (byte) ((n >> 24) & 0xff));
-        encoder.getWriteBuf().put(position + 1, (byte) ((n >> 16) & 0xff));
-        encoder.getWriteBuf().put(position + 2, (byte) ((n >> 8) & 0xff));
-        encoder.getWriteBuf().put(position + 3, (byte) (n & 0xff));
+        encoder.getWriteTarget().put(position, (byte) ((n >> 24) & 0xff));
+        encoder.getWriteTarget().put(position + 1, (byte) ((n >> 16) & 0xff));
+        encoder.getWriteTarget().put(position + 2, (byte) ((n >> 8) & 0xff));
+        encoder.getWriteTarget().put(position + 3, (byte) (n & 0xff));
     }
 }
 
@@ -280,17 +455,22 @@ class Nni8Number implements Encodable {
         this.n = n;
     }
 
+    @Override
+    public int encodedSize() {
+        return EncodeNniClass.Nni8.getIndex();
+    }
+
     @Override
     public void encodeTo(Encoder encoder) {
         int position = encoder.getWritePosition(EncodeNniClass.Nni8.getIndex());
-        encoder.getWriteBuf().put(position, (byte) ((n >> 56) & 0xff));
-        encoder.getWriteBuf().put(position + 1, (byte) ((n >> 48) & 0xff));
-        encoder.getWriteBuf().put(position + 2, (byte) ((n >> 40) & 0xff));
-        encoder.getWriteBuf().put(position + 3, (byte) ((n >> 32) & 0xff));
-        encoder.getWriteBuf().put(position + 4, (byte) ((n >> 24) & 0xff));
-        encoder.getWriteBuf().put(position + 5, (byte) ((n >> 16) & 0xff));
-        encoder.getWriteBuf().put(position + 6, (byte) ((n >> 8) & 0xff));
-        encoder.getWriteBuf().put(position + 7, (byte) (n & 0xff));
+        encoder.getWriteTarget().put(position, (byte) ((n >> 56) & 0xff));
+        encoder.getWriteTarget().put(position + 1, (byte) ((n >> 48) & 0xff));
+        encoder.getWriteTarget().put(position + 2, (byte) ((n >> 40) & 0xff));
+        encoder.getWriteTarget().put(position + 3, (byte) ((n >> 32) & 0xff));
+        encoder.getWriteTarget().put(position + 4, (byte) ((n >> 24) & 0xff));
+        encoder.getWriteTarget().put(position + 5, (byte) ((n >> 16) & 0xff));
+        encoder.getWriteTarget().put(position + 6, (byte) ((n >> 8) & 0xff));
+        encoder.getWriteTarget().put(position + 7, (byte) (n & 0xff));
     }
 
 }
@@ -302,17 +482,22 @@ class Nni8Big implements Encodable {
         this.n = n.longValue();
     }
 
+    @Override
+    public int encodedSize() {
+        return EncodeNniClass.Nni8.getIndex();
+    }
+
     @Override
     public void encodeTo(Encoder encoder) {
         int position = encoder.getWritePosition(EncodeNniClass.Nni8.getIndex());
-        encoder.getWriteBuf().put(position, (byte) ((n >> 56) & 0xff));
-        encoder.getWriteBuf().put(position + 1, (byte) ((n >> 48) & 0xff));
-        encoder.getWriteBuf().put(position + 2, (byte) ((n >> 40) & 0xff));
-        encoder.getWriteBuf().put(position + 3, (byte) ((n >> 32) & 0xff));
-        encoder.getWriteBuf().put(position + 4, (byte) ((n >> 24) & 0xff));
-        encoder.getWriteBuf().put(position + 5, (byte) ((n >> 16) & 0xff));
-        encoder.getWriteBuf().put(position + 6, (byte) ((n >> 8) & 0xff));
-        encoder.getWriteBuf().put(position + 7, (byte) (n & 0xff));
+        encoder.getWriteTarget().put(position, (byte) ((n >> 56) & 0xff));
+        encoder.getWriteTarget().put(position + 1, (byte) ((n >> 48) & 0xff));
+        encoder.getWriteTarget().put(position + 2, (byte) ((n >> 40) & 0xff));
+        encoder.getWriteTarget().put(position + 3, (byte) ((n >> 32) & 0xff));
+        encoder.getWriteTarget().put(position + 4, (byte) ((n >> 24) & 0xff));
+        encoder.getWriteTarget().put(position + 5, (byte) ((n >> 16) & 0xff));
+        encoder.getWriteTarget().put(position + 6, (byte) ((n >> 8) & 0xff));
+        encoder.getWriteTarget().put(position + 7, (byte) (n & 0xff));
     }
 }
 
@@ -0,0 +1,192 @@
+package com.miao.tlv.nni;
+
+import com.miao.tlv.Decoder;
+import com.miao.tlv.Encodable;
+import com.miao.tlv.Encoder;
+import com.miao.tlv.Strings;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * 重复 NNI 字段的批量编解码：long[] 编码为一串 TLV-TYPE 相同的 NNI TLV，或把这样一串 TLV 解码到 long[] / LongBuffer
+ * <p>
+ * 编码结果与逐个 prependTlv(type, NNI(n)) 相同，但不创建 Encodable 对象、不装箱。
+ */
+public class NniArray {
+
+    private NniArray() {
+    }
+
+    /**
+     * 编码后的字节数
+     *
+     * @param type
+     * @param values
+     * @return
+     */
+    public static int sizeOf(long type, long[] values) {
+        return sizeOf(type, values, 0, values.length);
+    }
+
+    public static int sizeOf(long type, long[] values, int offset, int length) {
+        int sizeofT = Strings.sizeofVarNum(type);
+        long size = 0;
+        for (int i = offset; i < offset + length; i++) {
+            size += sizeofT + 1 + Nni.sizeOf(values[i]);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("encoded size %s is too large", size));
+        }
+        return (int) size;
+    }
+
+    /**
+     * 按 values 的顺序写入一串 NNI TLV（从最后一个元素开始向前写）
+     *
+     * @param encoder
+     * @param type
+     * @param values
+     * @return 写入的字节数
+     */
+    public static int encode(Encoder encoder, long type, long[] values) {
+        return encode(encoder, type, values, 0, values.length);
+    }
+
+    public static int encode(Encoder encoder, long type, long[] values, int offset, int length) {
+        int size = 0;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            size += Nni.writeNniTlv(encoder, type, values[i]);
+        }
+        return size;
+    }
+
+    /**
+     * 可以预先计算大小的 Encodable，配合 Encoder.encode 一次分配
+     *
+     * @param type
+     * @param values 编码时读取，期间不能修改
+     * @return
+     */
+    public static Encodable of(long type, long[] values) {
+        return new Encodable() {
+            @Override
+            public void encodeTo(Encoder encoder) {
+                encode(encoder, type, values);
+            }
+
+            @Override
+            public int encodedSize() {
+                return sizeOf(type, values);
+            }
+        };
+    }
+
+    /**
+     * 从 buffer 的 position 开始连续解码 TLV-TYPE 为 type 的 NNI TLV，
+     * 遇到其他 TLV-TYPE、buffer 结束或 dst 写满时停止，position 移到最后一个解码的 TLV 之后
+     *
+     * @param buffer
+     * @param type
+     * @param dst
+     * @param offset dst 的起始下标
+     * @return 解码的个数
+     * @throws IllegalArgumentException TLV-LENGTH 被截断或超出 buffer、TLV-VALUE 不是 NNI；
+     *                                  position 移到出错的 TLV，之前的 TLV 已解码到 dst
+     */
+    public static int decode(ByteBuffer buffer, long type, long[] dst, int offset) {
+        int count = 0;
+        int position = buffer.position();
+        int limit = buffer.limit();
+        while (offset + count < dst.length && position < limit) {
+            int sizeofT = Decoder.sizeofVarNum(buffer.get(position));
+            if (position + sizeofT >= limit || Decoder.getVarNum(buffer, position) != type) {
+                break;
+            }
+
+            int lengthPosition = position + sizeofT;
+            int valuePosition = lengthPosition + Decoder.sizeofVarNum(buffer.get(lengthPosition));
+            if (valuePosition > limit) {
+                buffer.position(position);
+                throw new IllegalArgumentException(String.format("truncated TLV-LENGTH at %s", lengthPosition));
+            }
+            long length = Decoder.getVarNum(buffer, lengthPosition);
+            if (length < 0 || valuePosition + length > limit) {
+                buffer.position(position);
+                throw new IllegalArgumentException(String.format("TLV-LENGTH %s exceeds remaining %s", Long.toUnsignedString(length), limit - valuePosition));
+            }
+
+            try {
+                dst[offset + count] = Nni.decodeLong(buffer, valuePosition, (int) length);
+            } catch (IllegalArgumentException e) {
+                buffer.position(position);
+                throw e;
+            }
+            count++;
+            position = valuePosition + (int) length;
+        }
+        buffer.position(position);
+        return count;
+    }
+
+    /**
+     * 同 {@link #decode(ByteBuffer, long, long[], int)}，解码到 dst 的 position 处，直到 dst 写满
+     *
+     * @param buffer
+     * @param type
+     * @param dst
+     * @return 解码的个数
+     */
+    public static int decode(ByteBuffer buffer, long type, LongBuffer dst) {
+        if (dst.hasArray()) {
+            int count = decode(buffer, type, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + count);
+            return count;
+        }
+
+        // direct 的 LongBuffer 分段解码
+        long[] chunk = new long[Math.min(dst.remaining(), 256)];
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int n = Math.min(chunk.length, dst.remaining());
+            int start = buffer.position();
+            int count;
+            try {
+                count = decode(buffer, type, chunk, chunk.length - n);
+            } catch (IllegalArgumentException e) {
+                // 出错之前已解码的元素同样写入 dst，与 long[] 的行为一致
+                ByteBuffer decoded = buffer.duplicate();
+                decoded.limit(buffer.position());
+                decoded.position(start);
+                dst.put(chunk, chunk.length - n, decode(decoded, type, chunk, chunk.length - n));
+                throw e;
+            }
+            dst.put(chunk, chunk.length - n, count);
+            total += count;
+            if (count < n) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 解码全部连续的 NNI TLV
+     *
+     * @param buffer
+     * @param type
+     * @return
+     */
+    public static long[] decodeAll(ByteBuffer buffer, long type) {
+        long[] values = new long[16];
+        int count = 0;
+        while (true) {
+            count += decode(buffer, type, values, count);
+            if (count < values.length) {
+                return Arrays.copyOf(values, count);
+            }
+            values = Arrays.copyOf(values, values.length << 1);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.miao.tlv.nni;
+
+import com.miao.tlv.Encodable;
+import com.miao.tlv.Encoder;
+import com.miao.tlv.Strings;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 打包的 NNI 序列：一个 TLV 的 TLV-VALUE 中连续存放多个整数，适合单调递增的时间戳、偏移量等
+ * <p>
+ * 编码格式：每个元素与前一个元素的差值（第一个元素与 0 的差值）做 zigzag 变换后按 LEB128 varint 写入，
+ * 每字节 7 位数据，最高位为 1 表示后面还有字节。差值较小时每个元素只占 1~2 字节，
+ * 递减的序列和无符号 64-bit 的值也可以正确往返（差值按 2^64 取模）。
+ */
+public class NniSequence {
+
+    /**
+     * 64-bit 的 varint 最多 10 字节
+     */
+    private static final int _MAX_VARINT_SIZE = 10;
+
+    private NniSequence() {
+    }
+
+    /**
+     * TLV-VALUE 的字节数
+     *
+     * @param values
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static int sizeOf(long[] values, int offset, int length) {
+        long size = 0;
+        long previous = 0;
+        for (int i = offset; i < offset + length; i++) {
+            size += sizeofVarint(zigzag(values[i] - previous));
+            previous = values[i];
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("encoded size %s is too large", size));
+        }
+        return (int) size;
+    }
+
+    public static int sizeOf(long[] values) {
+        return sizeOf(values, 0, values.length);
+    }
+
+    /**
+     * 写入 TLV-TYPE 为 type、TLV-VALUE 为打包序列的 TLV
+     *
+     * @param encoder
+     * @param type
+     * @param values
+     * @return 写入的字节数
+     */
+    public static int encode(Encoder encoder, long type, long[] values) {
+        return encode(encoder, type, values, 0, values.length);
+    }
+
+    public static int encode(Encoder encoder, long type, long[] values, int offset, int length) {
+        // 从最后一个元素开始向前写，每个 varint 在自己的位置上正向写入
+        int valueSize = 0;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            long previous = i == offset ? 0 : values[i - 1];
+            long zz = zigzag(values[i] - previous);
+            int size = sizeofVarint(zz);
+            int position = encoder.getWritePosition(size);
+            ByteBuffer buf = encoder.getWriteTarget();
+            for (int j = 0; j < size - 1; j++) {
+                buf.put(position + j, (byte) ((zz & 0x7F) | 0x80));
+                zz >>>= 7;
+            }
+            buf.put(position + size - 1, (byte) zz);
+            valueSize += size;
+        }
+
+        int sizeofL = Strings.sizeofVarNum(valueSize);
+        int sizeofT = Strings.sizeofVarNum(type);
+        int position = encoder.getWritePosition(sizeofT + sizeofL);
+        ByteBuffer header = encoder.getWriteTarget().duplicate();
+        header.position(position);
+        Strings.putVarNum(header, type, sizeofT);
+        Strings.putVarNum(header, valueSize, sizeofL);
+        return sizeofT + sizeofL + valueSize;
+    }
+
+    /**
+     * 可以预先计算大小的 Encodable
+     *
+     * @param type
+     * @param values 编码时读取，期间不能修改
+     * @return
+     */
+    public static Encodable of(long type, long[] values) {
+        return new Encodable() {
+            @Override
+            public void encodeTo(Encoder encoder) {
+                encode(encoder, type, values);
+            }
+
+            @Override
+            public int encodedSize() {
+                int valueSize = sizeOf(values);
+                return Strings.sizeofVarNum(type) + Strings.sizeofVarNum(valueSize) + valueSize;
+            }
+        };
+    }
+
+    /**
+     * 序列中的元素个数（不解码，只统计 varint 的结束字节）
+     *
+     * @param value TLV-VALUE，读取 [position, limit)
+     * @return
+     */
+    public static int count(ByteBuffer value) {
+        int count = 0;
+        for (int i = value.position(); i < value.limit(); i++) {
+            if (value.get(i) >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 解码 TLV-VALUE，不改变 value 的 position
+     *
+     * @param value
+     * @return
+     */
+    public static long[] decode(ByteBuffer value) {
+        long[] values = new long[count(value)];
+        decode(value, values, 0);
+        return values;
+    }
+
+    /**
+     * 解码 TLV-VALUE 到 dst，不改变 value 的 position
+     *
+     * @param value
+     * @param dst
+     * @param offset dst 的起始下标
+     * @return 解码的个数
+     * @throws IllegalArgumentException varint 被截断或 dst 空间不足
+     */
+    public static int decode(ByteBuffer value, long[] dst, int offset) {
+        int index = offset;
+        long previous = 0;
+        int position = value.position();
+        int limit = value.limit();
+        while (position < limit) {
+            long zz = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == limit || shift == 7 * _MAX_VARINT_SIZE) {
+                    throw new IllegalArgumentException(String.format("truncated varint at offset %s", position));
+                }
+                b = value.get(position++);
+                zz |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            if (index == dst.length) {
+                throw new IllegalArgumentException(String.format("dst is too small for NNI sequence, capacity %s", dst.length - offset));
+            }
+            previous += unzigzag(zz);
+            dst[index++] = previous;
+        }
+        return index - offset;
+    }
+
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static int sizeofVarint(long n) {
+        int size = 1;
+        while ((n >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+}
@@ -14,16 +14,29 @@ public class Options {
 
     private boolean big = false;
 
+    /**
+     * 无符号 64-bit：long 按无符号处理，2^63 ~ 2^64-1 为负数（Long.toUnsignedString 输出），不使用 BigInteger
+     */
+    private boolean unsigned = false;
+
     public static Options of(Len len) {
         return of(len, false, false);
     }
 
+    public static Options unsigned() {
+        return of(null, false, false, true);
+    }
+
     public static Options of(Len len, boolean unsafe) {
         return of(len, unsafe, false);
     }
 
     public static Options of(Len len, boolean unsafe, boolean big) {
-        return new Options(len, unsafe, big);
+        return of(len, unsafe, big, false);
+    }
+
+    public static Options of(Len len, boolean unsafe, boolean big, boolean unsigned) {
+        return new Options(len, unsafe, big, unsigned);
     }
 
 }
@@ -0,0 +1,74 @@
+package com.miao.tlv;
+
+import com.miao.tlv.nni.Nni;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+@Slf4j
+public class ArenaEncoderTest {
+
+    @Test
+    public void testEncode() {
+        EncoderArena arena = new EncoderArena(1 << 16);
+        TLV root = new TLV(253, new byte[0]);
+        root.addChildTLV(new TLV(8, new byte[1000]));
+        root.addChildTLV(new TLV(9, new byte[]{1, 2}));
+
+        try (ArenaEncoder encoder = new ArenaEncoder(arena)) {
+            encoder.prependTlv(root);
+            Nni.NNI(0x1234).encodeTo(encoder);
+
+            ByteBuffer output = encoder.output();
+            Assert.assertTrue(output.isDirect());
+            Assert.assertEquals(1016, output.remaining());
+            Assert.assertEquals(0x12, output.get(0));
+            Assert.assertEquals(0x34, output.get(1));
+
+            Encoder heap = new Encoder();
+            heap.prependTlv(root);
+            Nni.NNI(0x1234).encodeTo(heap);
+            Assert.assertArrayEquals(Strings.getRemainBytes(heap.getWriteBuf()), encoder.getOutput());
+        }
+    }
+
+    /**
+     * close 后 block 归还给 arena，下一个 encoder 复用，不再切分 slab
+     */
+    @Test
+    public void testCloseReturnsBlock() {
+        EncoderArena arena = new EncoderArena(4096);
+        ArenaEncoder first = new ArenaEncoder(arena, 1024);
+        ByteBuffer block = first.getWriteBuf();
+        first.prependTlv(new TLV(8, new byte[]{1, 2, 3}));
+        first.close();
+        int unused = arena.unused();
+
+        try (ArenaEncoder second = new ArenaEncoder(arena, 1000)) {
+            Assert.assertSame(block, second.getWriteBuf());
+            Assert.assertEquals(0, second.getSize());
+            Assert.assertEquals(unused, arena.unused());
+        }
+    }
+
+    @Test
+    public void testFallback() {
+        EncoderArena arena = new EncoderArena(512);
+        try (ArenaEncoder encoder = new ArenaEncoder(arena, 256)) {
+            // 256 -> 512 超出 slab 剩余空间
+            encoder.prependTlv(new TLV(8, new byte[300]));
+            Assert.assertEquals(1, arena.getFallbackCount());
+            Assert.assertEquals(304, encoder.getSize());
+            Assert.assertTrue(encoder.output().isDirect());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUseAfterClose() {
+        ArenaEncoder encoder = new ArenaEncoder(new EncoderArena(1024));
+        encoder.close();
+        encoder.prependTlv(new TLV(8, new byte[]{1}));
+    }
+}
@@ -1,6 +1,7 @@
 package com.miao.tlv;
 
 import com.google.common.collect.Lists;
+import com.miao.tlv.nni.Nni;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Before;
@@ -43,7 +44,13 @@ public class DecoderTest {
         Assert.assertTrue(tlv.getLength() == decodeTlv.getLength());
         Assert.assertTrue(Arrays.toString(tlv.getValueBuf().array()).equals(Arrays.toString(decodeTlv.getValueBuf().array())));
 
-        Assert.assertTrue(decodeTlv.getChildTlvList() == null || decodeTlv.getChildTlvList().size() == 0);
+        // TLV-VALUE [12, 2, 20] 不是完整的 TLV 序列
+        try {
+            decodeTlv.getChildTlvList();
+            Assert.fail("leaf TLV-VALUE should not be parsed as child TLVs");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
     }
 
 
@@ -95,6 +102,82 @@ public class DecoderTest {
         Assert.assertTrue(Arrays.toString(tlvList.get(1).getValue()).equals("[123, 3]"));
     }
 
+    @Test
+    public void testZeroCopyRead() {
+        encoder.prependTlv(buildNestedTLV());
+        byte[] input = Strings.getRemainBytes(encoder.getWriteBuf());
+
+        Decoder decoder = new Decoder(input).setZeroCopy(true);
+        TLV decodeTlv = decoder.read();
+        Assert.assertTrue(decoder.eof());
+        Assert.assertTrue(decodeTlv.getType() == 12);
+
+        // valueBuf 为只读切片，不再拷贝
+        Assert.assertTrue(decodeTlv.getValueBuf().isReadOnly());
+        Assert.assertEquals(decodeTlv.getLength(), decodeTlv.getValueBuf().remaining());
+        TLV again = decodeTlv.getDecoder().read();
+        Assert.assertTrue(again.getType() == 12 && again.getLength() == decodeTlv.getLength());
+
+        List<TLV> tlvList = decodeTlv.getChildTlvList();
+        Assert.assertTrue(tlvList != null && tlvList.size() == 2);
+        Assert.assertEquals("[1, 2, 3, 4, 5, 6, 7, 8, 9, 10]", Arrays.toString(tlvList.get(0).getValue()));
+
+        List<TLV> tlvList2 = tlvList.get(1).getChildTlvList();
+        Assert.assertTrue(tlvList2.size() == 1);
+        Assert.assertEquals("[52, 62, 72, 82, 92]", Arrays.toString(tlvList2.get(0).getValue()));
+
+        // 切片与原始输入共享内存
+        input[input.length - 1] = 99;
+        Assert.assertEquals("[52, 62, 72, 82, 99]", Arrays.toString(tlvList2.get(0).getValue()));
+
+        // 嵌套 decoder 只包含当前 TLV
+        Decoder vd = decodeTlv.vd();
+        Assert.assertTrue(vd.isZeroCopy());
+        Assert.assertEquals(2, vd.readTlvList().size());
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        encoder.prependTlv(buildNestedTLV());
+        byte[] input = Strings.getRemainBytes(encoder.getWriteBuf());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(input.length);
+        direct.put(input);
+        direct.flip();
+
+        for (Decoder decoder : new Decoder[]{new Decoder(direct), new Decoder(direct.asReadOnlyBuffer()).setZeroCopy(true)}) {
+            TLV decodeTlv = decoder.read();
+            Assert.assertTrue(decodeTlv.getType() == 12);
+
+            List<TLV> tlvList = decodeTlv.vd().readTlvList();
+            Assert.assertTrue(tlvList.size() == 2);
+            Assert.assertEquals("[1, 2, 3, 4, 5, 6, 7, 8, 9, 10]", Arrays.toString(tlvList.get(0).getValue()));
+            Assert.assertEquals("[52, 62, 72, 82, 92]", Arrays.toString(tlvList.get(1).getChildTlvList().get(0).getValue()));
+            Assert.assertNotNull(decodeTlv.toString());
+        }
+
+        // 原 buffer 的 position 不受影响
+        Assert.assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void test64BitVarNum() {
+        long type = 0x100000001L;
+        TLV tlv = new TLV(type, new TLV(65536, new byte[]{1, 2}));
+        byte[] output = Encoder.encode(tlv);
+        Assert.assertEquals((byte) 0xFF, output[0]);
+        Assert.assertEquals(9 + 1 + 5 + 1 + 2, output.length);
+
+        TLV decodeTlv = new Decoder(output).read();
+        Assert.assertEquals(type, decodeTlv.getType());
+        Assert.assertEquals(65536, decodeTlv.getChildTlvList().get(0).getType());
+
+        TlvCursor cursor = new TlvCursor(ByteBuffer.wrap(output));
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals(type, cursor.type());
+        Assert.assertEquals(8, cursor.length());
+    }
+
     private TLV buildNestedTLV() {
         // 嵌套的结构： T1-L1-[T2-L2-V2, T3-L3-[TL4-L4-V4]]
         // actual: 12-[253-{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, 345-{35-{52, 62, 72, 82, 92}}]
@@ -127,5 +210,56 @@ public class DecoderTest {
         return tlv1;
     }
 
+    @Test
+    public void testReadNniTlv() {
+        Encoder encoder = new Encoder();
+        Nni.writeNniTlv(encoder, 0xC2, 0x100000000L);
+        Nni.writeNniTlv(encoder, 0xC1, 0x1234);
+        Nni.writeNniTlv(encoder, 253, 7);
+        Decoder decoder = new Decoder(encoder.getWriteBuf());
+
+        Assert.assertEquals(7, decoder.readNniTlv(253));
+        Assert.assertEquals(0x1234, decoder.readNniTlv(0xC1));
+        try {
+            decoder.readNniTlv(0xC1);
+            Assert.fail("TLV-TYPE mismatch");
+        } catch (IllegalArgumentException e) {
+            // position 不变，可以按正确的 TLV-TYPE 继续读取
+        }
+        Assert.assertEquals(0x100000000L, decoder.readNniTlv(0xC2));
+        Assert.assertNull(decoder.read());
+    }
+
+    /**
+     * TLV-VALUE 不是 NNI（3 字节）时 position 同样不变
+     */
+    @Test
+    public void testReadNniTlvInvalidLength() {
+        Decoder decoder = new Decoder(new byte[]{(byte) 0xC1, 0x03, 0x00, 0x00, 0x01});
+        try {
+            decoder.readNniTlv(0xC1);
+            Assert.fail("invalid NNI length");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(0, decoder.position());
+        }
+        Assert.assertEquals(3, decoder.read().getLength());
+    }
+
+    /**
+     * TLV-TYPE / TLV-LENGTH 被截断时抛出 IllegalArgumentException，position 不变
+     */
+    @Test
+    public void testReadNniTlvTruncatedHeader() {
+        byte[][] inputs = new byte[][]{{0x01, (byte) 0xFD, 0x00}, {0x01}, {(byte) 0xFD, 0x00}};
+        for (byte[] input : inputs) {
+            Decoder decoder = new Decoder(input);
+            try {
+                decoder.readNniTlv(1);
+                Assert.fail("truncated header");
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals(0, decoder.position());
+            }
+        }
+    }
 
 }
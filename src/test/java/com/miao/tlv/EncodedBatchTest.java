@@ -0,0 +1,77 @@
+package com.miao.tlv;
+
+import com.google.common.collect.Lists;
+import com.miao.tlv.nni.Nni;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+@Slf4j
+public class EncodedBatchTest {
+
+    @Test
+    public void testEncodeBatch() {
+        List<Object> items = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            items.add(new TLV(0x10 + i % 300, new byte[]{(byte) i, (byte) (i >> 8)}));
+        }
+        // 不能预先计算大小的 Encodable
+        items.add((Encodable) e -> e.prependTlv(8, Nni.NNI(1)));
+
+        EncodedBatch batch = Encoder.encodeBatch(items);
+        Assert.assertEquals(items.size(), batch.size());
+        Assert.assertEquals(batch.getSize(), batch.getBuffer().remaining());
+
+        for (int i = 0; i < items.size(); i++) {
+            byte[] expected = Encoder.encode(items.get(i));
+            Assert.assertEquals(expected.length, batch.length(i));
+            Assert.assertArrayEquals(expected, Strings.getRemainBytes(batch.get(i)));
+        }
+
+        // 整个批次可以按顺序解码
+        List<TLV> tlvList = new Decoder(batch.getBuffer()).readTlvList();
+        Assert.assertEquals(items.size(), tlvList.size());
+        Assert.assertEquals(0x10 + 999 % 300, tlvList.get(999).getType());
+    }
+
+    /**
+     * 元素都不能预先计算大小时，按 GrowthPolicy 扩容
+     */
+    @Test
+    public void testUnmeasurableItems() {
+        List<Object> items = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            int type = 0x20 + i;
+            items.add((Encodable) e -> e.prependTlv(new TLV(type, new byte[1000])));
+        }
+
+        EncodedBatch batch = Encoder.encodeBatch(items);
+        Assert.assertEquals(10 * (1 + 3 + 1000), batch.getSize());
+        for (int i = 0; i < items.size(); i++) {
+            Assert.assertArrayEquals(Encoder.encode(items.get(i)), Strings.getRemainBytes(batch.get(i)));
+        }
+    }
+
+    @Test
+    public void testEmptyBatch() {
+        EncodedBatch batch = Encoder.encodeBatch(Lists.newArrayList());
+        Assert.assertEquals(0, batch.size());
+        Assert.assertEquals(0, batch.getSize());
+        Assert.assertArrayEquals(new int[]{0}, batch.getOffsets());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexOutOfBounds() {
+        Encoder.encodeBatch(Lists.newArrayList(new TLV(8, new byte[]{1}))).get(1);
+    }
+
+    @Test
+    public void testSliceIsReadOnly() {
+        EncodedBatch batch = Encoder.encodeBatch(Lists.newArrayList(ByteBuffer.wrap(new byte[]{8, 1, 1})));
+        Assert.assertTrue(batch.get(0).isReadOnly());
+        Assert.assertEquals(3, batch.offset(0) + batch.length(0));
+    }
+}
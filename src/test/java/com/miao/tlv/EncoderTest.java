@@ -1,12 +1,15 @@
 package com.miao.tlv;
 
 import cn.hutool.core.util.ReflectUtil;
+import com.google.common.collect.Lists;
+import com.miao.tlv.nni.Nni;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
 
 @Slf4j
 public class EncoderTest {
@@ -27,9 +30,12 @@ public class EncoderTest {
         int remainingSize = encoder.getSize();
         log.info("after grow - position: {}, limit: {}, capacity: {}", encoder.getWriteBuf().position(),
                 encoder.getWriteBuf().limit(), encoder.getWriteBuf().capacity());
-        Assert.assertTrue(encoder.getWriteBuf().position() == 11);
-        Assert.assertTrue(encoder.getWriteBuf().limit() == 21);
-        Assert.assertTrue(encoder.getWriteBuf().capacity() == 21);
+        // 默认容量翻倍，空 buffer 扩容后仍然没有可读的字节
+        Assert.assertTrue(encoder.getWriteBuf().position() == 20);
+        Assert.assertTrue(encoder.getWriteBuf().limit() == 20);
+        Assert.assertTrue(encoder.getWriteBuf().capacity() == 20);
+        Assert.assertEquals(0, remainingSize);
+        Assert.assertEquals(1, encoder.getGrowCount());
         log.info("remaining size after grwo = {}", remainingSize);
     }
 
@@ -136,9 +142,9 @@ public class EncoderTest {
         encoder.prependTlv(TLV2);
 
         System.out.println("buffer array: " + encoder.getWriteBuf());
-        // [0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 8, 2, 3, 4, -4, 5, 1, 0, 0, 2, 0]
+        // [0, 0, 0, 0, 0, 0, 0, 0, 0, 8, 2, 3, 4, -4, 5, 1, 0, 0, 2, 0]
         System.out.println("buffer str: " + Arrays.toString(encoder.getWriteBuf().array()));
-        Assert.assertTrue("[0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 8, 2, 3, 4, -4, 5, 1, 0, 0, 2, 0]".equals(Arrays.toString(encoder.getWriteBuf().array())));
+        Assert.assertTrue("[0, 0, 0, 0, 0, 0, 0, 0, 0, 8, 2, 3, 4, -4, 5, 1, 0, 0, 2, 0]".equals(Arrays.toString(encoder.getWriteBuf().array())));
     }
 
 
@@ -218,4 +224,144 @@ public class EncoderTest {
         Assert.assertTrue("[12, 13, -3, 0, -3, 9, -3, -1, -1, 5, 11, 22, 33, 44, 55]".equals(Strings.getRemainBytesString(encoder.getWriteBuf())));
     }
 
+
+    /**
+     * 已写入部分数据后扩容，已写入的字节保持不变，前面不会多出 0
+     */
+    @Test
+    public void testGrowKeepsWrittenBytes() {
+        Encoder encoder = new Encoder(16);
+        List<TLV> tlvList = Lists.newArrayList();
+        for (int i = 0; i < 300; i++) {
+            tlvList.add(new TLV(0x10, new byte[]{(byte) i}));
+        }
+        for (int i = tlvList.size() - 1; i >= 0; i--) {
+            encoder.prependTlv(tlvList.get(i));
+        }
+
+        Assert.assertEquals(900, encoder.getSize());
+        // 16 -> 32 -> ... -> 1024
+        Assert.assertEquals(6, encoder.getGrowCount());
+        List<TLV> decoded = new Decoder(Strings.getRemainBytes(encoder.getWriteBuf())).readTlvList();
+        Assert.assertEquals(300, decoded.size());
+        Assert.assertEquals((byte) 299, decoded.get(299).getValueBuf().get(0));
+    }
+
+    @Test
+    public void testGrowthPolicy() {
+        Assert.assertEquals(20, GrowthPolicy.doubling().newCapacity(10, 11));
+        Assert.assertEquals(100, GrowthPolicy.doubling().newCapacity(10, 100));
+        Assert.assertEquals(1 << 21, GrowthPolicy.doubling(1 << 20).newCapacity(1 << 20, (1 << 20) + 1));
+        Assert.assertEquals((1 << 24) + (1 << 20), GrowthPolicy.doubling(1 << 20).newCapacity(1 << 24, (1 << 24) + 1));
+        Assert.assertEquals(21, GrowthPolicy.linear(10).newCapacity(10, 11));
+        Assert.assertEquals(GrowthPolicy.MAX_CAPACITY, GrowthPolicy.doubling().newCapacity(Integer.MAX_VALUE / 2 + 1, Integer.MAX_VALUE / 2 + 2));
+
+        Encoder encoder = new Encoder(10, GrowthPolicy.linear(10));
+        encoder.prependTlv(new TLV(8, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}));
+        // TLV-VALUE 恰好写满，写 TLV-LENGTH 时扩容到 11 + 10
+        Assert.assertEquals(21, encoder.getWriteBuf().capacity());
+        Assert.assertEquals(1, encoder.getGrowCount());
+        Assert.assertEquals("[8, 10, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10]", Strings.getRemainBytesString(encoder.getWriteBuf()));
+    }
+
+
+    @Test
+    public void testReset() {
+        Encoder encoder = new Encoder(4);
+        encoder.prependTlv(new TLV(8, new byte[]{1, 2, 3, 4, 5, 6}));
+        int capacity = encoder.getWriteBuf().capacity();
+
+        encoder.reset();
+        Assert.assertEquals(0, encoder.getSize());
+        Assert.assertEquals(capacity, encoder.getWriteBuf().capacity());
+
+        encoder.prependTlv(new TLV(9, new byte[]{7}));
+        Assert.assertEquals("[9, 1, 7]", Strings.getRemainBytesString(encoder.getWriteBuf()));
+        Assert.assertEquals(1, encoder.getGrowCount());
+
+        // 超过保留上限时恢复初始大小
+        encoder.reset(4);
+        Assert.assertEquals(0, encoder.getSize());
+        Assert.assertEquals(4, encoder.getWriteBuf().capacity());
+    }
+
+    /**
+     * 静态 encode 复用线程内的 Encoder，嵌套调用时使用新的 Encoder
+     */
+    @Test
+    public void testEncodeReuse() {
+        TLV tlv = new TLV(8, new byte[]{1, 2, 3});
+        Assert.assertArrayEquals(new byte[]{8, 3, 1, 2, 3}, Encoder.encode(tlv));
+        Assert.assertArrayEquals(new byte[]{8, 3, 1, 2, 3}, Encoder.encode(tlv));
+
+        Encodable nested = encoder -> {
+            byte[] inner = Encoder.encode(tlv);
+            encoder.prependTlv(new TLV(9, inner));
+        };
+        Assert.assertArrayEquals(new byte[]{9, 5, 8, 3, 1, 2, 3}, Encoder.encode(nested));
+
+        byte[] large = new byte[Encoder._MAX_RETAINED_BUFFER_SIZE];
+        Assert.assertEquals(large.length + 6, Encoder.encode(new TLV(8, large)).length);
+        Assert.assertArrayEquals(new byte[]{8, 3, 1, 2, 3}, Encoder.encode(tlv, 16));
+    }
+
+
+    /**
+     * 可以预先计算大小时，encode 一次分配恰好大小的 buffer
+     */
+    @Test
+    public void testEncodeExactSize() {
+        TLV tlv1 = new TLV(252, new byte[300]);
+        TLV tlv2 = new TLV(253, new byte[]{1, 2, 3});
+        tlv2.addChildTLV(new TLV(65535, new byte[]{11, 22}));
+        List<TLV> tlvList = Lists.newArrayList(tlv1, tlv2);
+
+        int size = Encoder.sizeOf(tlvList);
+        Assert.assertEquals(304 + 10, size);
+        byte[] exact = Encoder.encode(tlvList);
+        Assert.assertEquals(size, exact.length);
+
+        Encoder encoder = new Encoder(16);
+        encoder.prependTlv(tlv2);
+        encoder.prependTlv(tlv1);
+        Assert.assertArrayEquals(Strings.getRemainBytes(encoder.getWriteBuf()), exact);
+
+        Assert.assertEquals(8, Encoder.sizeOf(Nni.NNI(0x100000000L)));
+        Assert.assertArrayEquals(new byte[]{1, 0}, Encoder.encode(Nni.NNI(256)));
+
+        // 未实现 encodedSize 的 Encodable 使用原来的方式
+        Encodable encodable = e -> e.prependTlv(8, Nni.NNI(1));
+        Assert.assertEquals(-1, Encoder.sizeOf(encodable));
+        Assert.assertArrayEquals(new byte[]{8, 1, 1}, Encoder.encode(encodable));
+    }
+
+
+    @Test
+    public void testEncodeInto() {
+        TLV tlv = new TLV(253, new byte[]{1, 2, 3});
+        tlv.addChildTLV(new TLV(8, new byte[]{11, 22}));
+        byte[] expected = Encoder.encode(tlv);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(32);
+        direct.put((byte) 0x7F);
+        Assert.assertEquals(expected.length, Encoder.encodeInto(tlv, direct));
+        Assert.assertEquals(1 + expected.length, direct.position());
+        direct.flip();
+        direct.get();
+        Assert.assertEquals(Strings.getRemainBytesString(ByteBuffer.wrap(expected)), Strings.getRemainBytesString(direct));
+
+        // 空间不足时返回所需字节数，position 不变
+        ByteBuffer small = ByteBuffer.allocate(4);
+        Assert.assertEquals(-expected.length, Encoder.encodeInto(tlv, small));
+        Assert.assertEquals(0, small.position());
+
+        // 无法预先计算大小的 Encodable
+        Encodable encodable = e -> e.prependTlv(8, Nni.NNI(1));
+        ByteBuffer heap = ByteBuffer.allocate(8);
+        Assert.assertEquals(3, Encoder.encodeInto(encodable, heap));
+        Assert.assertEquals(-3, Encoder.encodeInto(encodable, ByteBuffer.allocateDirect(2)));
+        heap.flip();
+        Assert.assertEquals("[8, 1, 1]", Strings.getRemainBytesString(heap));
+    }
+
 }
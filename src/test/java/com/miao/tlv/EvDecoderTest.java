@@ -82,6 +82,25 @@ public class EvDecoderTest {
 		Assert.assertTrue("c1 == 0x0104", target3.c1 == 0x0104);
 	}
 
+	@Test
+	public void testDecodeDirectBuffer() {
+		byte[] input = hexToByteArray(new int[]{
+				0xA0, 0x11,
+				0xA1, 0x01, 0x10,
+				0xA4, 0x00,
+				0xA6, 0x00,
+				0xA6, 0x00,
+				0xA9, 0x00,
+				0xC0, 0x04, 0xC1, 0x02, 0x01, 0x04,
+		});
+		ByteBuffer direct = ByteBuffer.allocateDirect(input.length);
+		direct.put(input).flip();
+
+		EvdTestTarget target = evDecoder.decode(new EvdTestTarget(), new Decoder(direct.asReadOnlyBuffer()));
+		Assert.assertTrue("sum == 1121", target.sum().intValue() == 1121);
+		Assert.assertTrue("c1 == 0x0104", target.c1 == 0x0104);
+	}
+
 	@Test
 	public void testDecodeUnknownNonCritical() {
 		Decoder decoder = new Decoder(hexToByteArray(new int[]{
@@ -0,0 +1,100 @@
+package com.miao.tlv;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+@Slf4j
+public class ForwardEncoderTest {
+
+    private Path file;
+
+    @Before
+    public void before() throws IOException {
+        file = Files.createTempFile("tlv", ".bin");
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testBackPatch() throws IOException {
+        byte[] content = new byte[5000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ForwardEncoder encoder = new ForwardEncoder(channel);
+            encoder.begin(0xA0);
+            encoder.write(new TLV(0xC0, new byte[]{1, 2}));
+            encoder.begin(0xC1);
+            Assert.assertEquals(content.length, encoder.transferFrom(new ByteArrayInputStream(content)));
+            Assert.assertEquals(content.length, encoder.end());
+            Assert.assertEquals(4 + 10 + content.length, encoder.end());
+            Assert.assertEquals(0, encoder.depth());
+        }
+
+        byte[] output = Files.readAllBytes(file);
+        Assert.assertEquals(1 + 9 + 4 + 10 + content.length, output.length);
+        Assert.assertEquals(3, new TlvValidator().setContainerTypes(0xA0).setAllowNonMinimal(true).validate(output));
+
+        TLV root = new Decoder(output).read();
+        Assert.assertEquals(0xA0, root.getType());
+        List<TLV> children = root.getChildTlvList();
+        Assert.assertEquals(2, children.size());
+        Assert.assertArrayEquals(new byte[]{1, 2}, children.get(0).getValue());
+        Assert.assertArrayEquals(content, children.get(1).getValue());
+    }
+
+    @Test
+    public void testReservedLengthSize() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ForwardEncoder encoder = new ForwardEncoder(channel).setReservedLengthSize(3);
+            encoder.begin(8).write(new byte[]{1, 2, 3});
+            encoder.end();
+        }
+        Assert.assertArrayEquals(new byte[]{8, (byte) 0xFD, 0, 3, 1, 2, 3}, Files.readAllBytes(file));
+    }
+
+    /**
+     * 长度已知时可以写入 OutputStream，结果与 Encoder 相同
+     */
+    @Test
+    public void testKnownLength() throws IOException {
+        TLV child = new TLV(0xC0, new byte[300]);
+        TLV root = new TLV(0xA0, new byte[0]);
+        root.addChildTLV(child);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ForwardEncoder encoder = new ForwardEncoder(out);
+        encoder.begin(0xA0, child.getTlvSize()).write(child);
+        encoder.end();
+        Assert.assertArrayEquals(Encoder.encode(root), out.toByteArray());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownLengthOnStream() throws IOException {
+        new ForwardEncoder(new ByteArrayOutputStream()).begin(0xA0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLengthMismatch() throws IOException {
+        ForwardEncoder encoder = new ForwardEncoder(new ByteArrayOutputStream());
+        encoder.begin(0xA0, 3).write(new byte[]{1, 2});
+        encoder.end();
+    }
+}
@@ -0,0 +1,163 @@
+package com.miao.tlv;
+
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.miao.tlv.Strings.hexToByteArray;
+
+@Slf4j
+public class MappedTlvReaderTest {
+
+    private Path file;
+
+    private byte[] input;
+
+    @Before
+    public void before() throws IOException {
+        byte[] big = new byte[100];
+        Arrays.fill(big, (byte) 7);
+        List<TLV> tlvList = Lists.newArrayList(
+                new TLV(12, new byte[]{12, 2}),
+                new TLV(253, big),
+                new TLV(345, new byte[]{1, 2, 3}),
+                new TLV(8, 0));
+        input = Encoder.encode(tlvList);
+        file = Files.createTempFile("tlv", ".bin");
+        Files.write(file, input);
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testReadAcrossSegments() throws IOException {
+        List<TLV> expected = new Decoder(input).readTlvList();
+
+        // segment 比 TLV 还小，每个 TLV 都会跨越 segment 边界
+        try (MappedTlvReader reader = new MappedTlvReader(file, 20)) {
+            List<TLV> tlvList = reader.readTlvList();
+            Assert.assertTrue(reader.eof());
+            Assert.assertEquals(expected.size(), tlvList.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(expected.get(i).getType(), tlvList.get(i).getType());
+                Assert.assertEquals(expected.get(i).getLength(), tlvList.get(i).getLength());
+                Assert.assertArrayEquals(expected.get(i).getValue(), tlvList.get(i).getValue());
+            }
+            Assert.assertTrue(tlvList.get(1).getValueBuf().isDirect());
+        }
+    }
+
+    @Test
+    public void testPosition() throws IOException {
+        try (MappedTlvReader reader = new MappedTlvReader(file)) {
+            TLV first = reader.read();
+            long second = reader.position();
+            Assert.assertEquals(first.getTlvSize(), second);
+
+            reader.read();
+            reader.position(second);
+            Assert.assertEquals(253, reader.read().getType());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncated() throws IOException {
+        Files.write(file, Arrays.copyOf(input, input.length - 3));
+        try (MappedTlvReader reader = new MappedTlvReader(file, 32)) {
+            reader.readTlvList();
+        }
+    }
+
+    /**
+     * 文件在 TLV-TYPE / TLV-LENGTH 的 VAR-NUMBER 中间结束
+     */
+    @Test
+    public void testTruncatedHeader() throws IOException {
+        byte[][] tails = new byte[][]{{(byte) 0xFD, 0x01}, {0x08, (byte) 0xFE, 0x00}};
+        for (byte[] tail : tails) {
+            byte[] data = Arrays.copyOf(input, input.length + tail.length);
+            System.arraycopy(tail, 0, data, input.length, tail.length);
+            Files.write(file, data);
+            try (MappedTlvReader reader = new MappedTlvReader(file)) {
+                reader.position(input.length);
+                reader.skip();
+                Assert.fail();
+            } catch (EOFException e) {
+                log.info(e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testLargeValueRegion() throws IOException {
+        // TLV-LENGTH 超过 2GB，使用 64-bit VAR-NUMBER；稀疏文件，不实际占用磁盘
+        long length = (1L << 31) + 10;
+        byte[] header = hexToByteArray(new int[]{0x08, 0xFF, 0x00, 0x00, 0x00, 0x00, 0x80, 0x00, 0x00, 0x0A});
+        byte[] tail = hexToByteArray(new int[]{0x09, 0x01, 0x05});
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(0);
+            raf.write(header);
+            raf.write(new byte[]{1, 2, 3});
+            raf.seek(header.length + length);
+            raf.write(tail);
+        }
+
+        try (MappedTlvReader reader = new MappedTlvReader(file, 1024)) {
+            TlvRegion region = reader.readRegion();
+            Assert.assertEquals(8, region.getType());
+            Assert.assertEquals(length, region.getLength());
+            Assert.assertEquals(header.length, region.getValueOffset());
+            Assert.assertEquals(header.length + length, region.getTlvSize());
+
+            try (InputStream in = region.openValueStream()) {
+                byte[] head = new byte[4];
+                Assert.assertEquals(4, in.read(head));
+                Assert.assertArrayEquals(new byte[]{1, 2, 3, 0}, head);
+            }
+
+            TLV next = reader.read();
+            Assert.assertEquals(9, next.getType());
+            Assert.assertArrayEquals(new byte[]{5}, next.getValue());
+            Assert.assertTrue(reader.eof());
+
+            reader.position(0);
+            try {
+                reader.read();
+                Assert.fail("value larger than 2GB cannot be mapped");
+            } catch (IllegalArgumentException e) {
+                log.info(e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testTransferValue() throws IOException {
+        try (MappedTlvReader reader = new MappedTlvReader(file)) {
+            reader.skip();
+            TlvRegion region = reader.readRegion();
+            Assert.assertEquals(253, region.getType());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Assert.assertEquals(100, region.transferValueTo(Channels.newChannel(out)));
+            Assert.assertEquals(100, out.size());
+            Assert.assertEquals(7, out.toByteArray()[99]);
+        }
+    }
+}
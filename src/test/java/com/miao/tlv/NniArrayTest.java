@@ -0,0 +1,115 @@
+package com.miao.tlv;
+
+import com.miao.tlv.nni.Nni;
+import com.miao.tlv.nni.NniArray;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+@Slf4j
+public class NniArrayTest {
+
+    private final long[] values = {0, 1, 255, 256, 65535, 65536, 0xFFFFFFFFL, 0x100000000L, Commons.MAX_SAFE_INTEGER};
+
+    /**
+     * 与逐个 prependTlv(type, NNI(n)) 的结果相同
+     */
+    @Test
+    public void testEncode() {
+        Encoder expected = new Encoder();
+        for (int i = values.length - 1; i >= 0; i--) {
+            expected.prependTlv(253, Nni.NNI(values[i]));
+        }
+
+        byte[] output = Encoder.encode(NniArray.of(253, values));
+        Assert.assertEquals(NniArray.sizeOf(253, values), output.length);
+        Assert.assertArrayEquals(Strings.getRemainBytes(expected.getWriteBuf()), output);
+    }
+
+    @Test
+    public void testDecode() {
+        Encoder encoder = new Encoder();
+        Nni.writeNniTlv(encoder, 0xC9, 1);
+        NniArray.encode(encoder, 0xC8, values);
+        ByteBuffer buffer = ByteBuffer.wrap(Strings.getRemainBytes(encoder.getWriteBuf()));
+
+        // 遇到其他 TLV-TYPE 停止
+        long[] dst = new long[values.length + 4];
+        Assert.assertEquals(values.length, NniArray.decode(buffer, 0xC8, dst, 2));
+        Assert.assertEquals(0, dst[0]);
+        Assert.assertEquals(Commons.MAX_SAFE_INTEGER.longValue(), dst[values.length + 1]);
+        Assert.assertEquals(1, new Decoder(buffer).readNniTlv(0xC9));
+
+        buffer.rewind();
+        Assert.assertArrayEquals(values, NniArray.decodeAll(buffer, 0xC8));
+
+        buffer.rewind();
+        Decoder decoder = new Decoder(buffer);
+        long[] head = new long[3];
+        Assert.assertEquals(3, decoder.readNniArray(0xC8, head));
+        Assert.assertArrayEquals(new long[]{0, 1, 255}, head);
+        Assert.assertEquals(256, decoder.readNniTlv(0xC8));
+    }
+
+    @Test
+    public void testDecodeLongBuffer() {
+        long[] many = new long[1000];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = i * 1000L;
+        }
+        byte[] output = Encoder.encode(NniArray.of(8, many));
+
+        // dst 写满时停止，position 停在下一个 TLV
+        ByteBuffer buffer = ByteBuffer.wrap(output);
+        LongBuffer heap = LongBuffer.allocate(600);
+        Assert.assertEquals(600, NniArray.decode(buffer, 8, heap));
+
+        LongBuffer direct = ByteBuffer.allocateDirect(8 * 500).asLongBuffer();
+        Assert.assertEquals(400, NniArray.decode(buffer, 8, direct));
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertEquals(599000L, heap.get(599));
+        Assert.assertEquals(999000L, direct.get(399));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        NniArray.decodeAll(ByteBuffer.wrap(new byte[]{8, 4, 0, 0, 1}), 8);
+    }
+
+    /**
+     * TLV-LENGTH 被截断、TLV-VALUE 不是 NNI 时，position 停在出错的 TLV，之前的元素已解码
+     */
+    @Test
+    public void testInvalidPosition() {
+        byte[][] inputs = new byte[][]{
+                {8, 1, 5, 8, 2, 0, 6, 8, (byte) 0xFD, 0x00},
+                {8, 1, 5, 8, 2, 0, 6, 8, 3, 0, 0, 7},
+        };
+        for (byte[] input : inputs) {
+            ByteBuffer buffer = ByteBuffer.wrap(input);
+            long[] dst = new long[4];
+            try {
+                NniArray.decode(buffer, 8, dst, 0);
+                Assert.fail("should be invalid");
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals(7, buffer.position());
+                Assert.assertEquals(5, dst[0]);
+                Assert.assertEquals(6, dst[1]);
+            }
+
+            buffer.rewind();
+            LongBuffer direct = ByteBuffer.allocateDirect(8 * 4).asLongBuffer();
+            try {
+                NniArray.decode(buffer, 8, direct);
+                Assert.fail("should be invalid");
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals(7, buffer.position());
+                Assert.assertEquals(2, direct.position());
+                Assert.assertEquals(6, direct.get(1));
+            }
+        }
+    }
+}
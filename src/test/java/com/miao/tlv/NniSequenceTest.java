@@ -0,0 +1,73 @@
+package com.miao.tlv;
+
+import com.miao.tlv.nni.NniArray;
+import com.miao.tlv.nni.NniSequence;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+@Slf4j
+public class NniSequenceTest {
+
+    /**
+     * 单调递增的时间戳，每个元素只占 1~2 字节
+     */
+    @Test
+    public void testTimestamps() {
+        long[] timestamps = new long[10000];
+        long timestamp = 1700000000000L;
+        Random random = new Random(1);
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamp += random.nextInt(1000);
+            timestamps[i] = timestamp;
+        }
+
+        byte[] output = Encoder.encode(NniSequence.of(0xD0, timestamps));
+        TLV tlv = new Decoder(output).read();
+        Assert.assertEquals(0xD0, tlv.getType());
+        Assert.assertEquals(timestamps.length, NniSequence.count(tlv.getValueBuf()));
+        Assert.assertArrayEquals(timestamps, NniSequence.decode(tlv.getValueBuf()));
+
+        int arraySize = NniArray.sizeOf(0xD0, timestamps);
+        log.info("packed {} bytes, NNI TLVs {} bytes", output.length, arraySize);
+        Assert.assertTrue(output.length * 4 < arraySize);
+    }
+
+    /**
+     * 递减、无符号 64-bit 的值同样可以往返
+     */
+    @Test
+    public void testArbitraryValues() {
+        long[] values = {5, 3, 0, Long.MAX_VALUE, -1L, Long.MIN_VALUE, 0, 1};
+        Encoder encoder = new Encoder(4);
+        int size = NniSequence.encode(encoder, 253, values);
+        Assert.assertEquals(encoder.getSize(), size);
+
+        TLV tlv = new Decoder(encoder.getWriteBuf()).read();
+        Assert.assertEquals(NniSequence.sizeOf(values), tlv.getLength());
+        long[] dst = new long[values.length + 1];
+        Assert.assertEquals(values.length, NniSequence.decode(tlv.getValueBuf(), dst, 1));
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], dst[i + 1]);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertArrayEquals(new byte[]{8, 0}, Encoder.encode(NniSequence.of(8, new long[0])));
+        Assert.assertEquals(0, NniSequence.decode(ByteBuffer.allocate(0)).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        NniSequence.decode(ByteBuffer.wrap(new byte[]{2, (byte) 0x80}), new long[2], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDstTooSmall() {
+        NniSequence.decode(ByteBuffer.wrap(new byte[]{2, 2, 2}), new long[2], 0);
+    }
+}
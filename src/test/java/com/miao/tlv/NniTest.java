@@ -173,6 +173,112 @@ public class NniTest {
 		Assert.assertTrue(String.format("expected: 4294967296, actual: %s", number), 4294967296l == number.longValue());
 	}
 
+	@Test
+	public void testSizeOf() {
+		Assert.assertEquals(1, Nni.sizeOf(0));
+		Assert.assertEquals(1, Nni.sizeOf(0xFF));
+		Assert.assertEquals(2, Nni.sizeOf(0x100));
+		Assert.assertEquals(4, Nni.sizeOf(0x10000));
+		Assert.assertEquals(4, Nni.sizeOf(0xFFFFFFFFL));
+		Assert.assertEquals(8, Nni.sizeOf(0x100000000L));
+		Assert.assertEquals(8, Nni.sizeOf(Long.MAX_VALUE));
+	}
+
+	/**
+	 * writeNni 与 NNI(Number) 的编码结果相同
+	 */
+	@Test
+	public void testWriteNni() {
+		long[] values = {0, 255, 256, 65535, 65536, 0xFFFFFFFFL, 0x100000000L, Commons.MAX_SAFE_INTEGER};
+		for (long value : values) {
+			Encoder encoder = new Encoder(4);
+			Assert.assertEquals(Nni.sizeOf(value), Nni.writeNni(encoder, value));
+			byte[] output = Strings.getRemainBytes(encoder.getWriteBuf());
+			Assert.assertArrayEquals(Encoder.encode(Nni.NNI(value)), output);
+			Assert.assertEquals(value, Nni.decodeLong(ByteBuffer.wrap(output)));
+		}
+
+		Encoder encoder = new Encoder(4);
+		Assert.assertEquals(6, Nni.writeNniTlv(encoder, 253, 0x1234));
+		Encoder expected = new Encoder();
+		expected.prependTlv(253, Nni.NNI(0x1234));
+		Assert.assertEquals(Strings.getRemainBytesString(expected.getWriteBuf()), Strings.getRemainBytesString(encoder.getWriteBuf()));
+	}
+
+	/**
+	 * 写 TLV-LENGTH 时扩容
+	 */
+	@Test
+	public void testWriteNniTlvGrowOnLength() {
+		Encoder encoder = new Encoder(1);
+		Assert.assertEquals(3, Nni.writeNniTlv(encoder, 1, 5));
+		ByteBuffer output = encoder.getWriteBuf();
+		Assert.assertEquals(3, output.remaining());
+		Assert.assertEquals(1, output.get(output.position()));
+		Assert.assertEquals(1, output.get(output.position() + 1));
+		Assert.assertEquals(5, output.get(output.position() + 2));
+	}
+
+	@Test
+	public void testDecodeLong() {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[]{9, 0x12, 0x34, 0x56, 0x78});
+		Assert.assertEquals(0x12345678L, Nni.decodeLong(buffer, 1, 4));
+		Assert.assertEquals(0, buffer.position());
+		Assert.assertEquals(0x1234L, Nni.decodeLong(buffer, 1, 2));
+
+		buffer.position(1);
+		Assert.assertEquals(0x12345678L, Nni.decodeLong(buffer));
+		Assert.assertEquals(buffer.limit(), buffer.position());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeLongInvalidLength() {
+		Nni.decodeLong(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+	}
+
+	/**
+	 * 装箱的 Long 不再因为 (int) 强转抛出 ClassCastException
+	 */
+	@Test
+	public void testNniBoxedLong() {
+		Assert.assertArrayEquals(new byte[]{1, 0}, Encoder.encode(Nni.NNI(Long.valueOf(256))));
+		Assert.assertArrayEquals(new byte[]{0, 0, 0, 1, 0, 0, 0, 0}, Encoder.encode(Nni.NNI(0x100000000L)));
+	}
+
+	/**
+	 * 无符号 64-bit：2^64-1 等大数值不经过 BigInteger 往返
+	 */
+	@Test
+	public void testUnsigned() {
+		long[] values = {0, 0xFFFFFFFFL, Commons.MAX_SAFE_INTEGER + 2, Long.MAX_VALUE, Long.MIN_VALUE, -1L};
+		for (long value : values) {
+			Encoder encoder = new Encoder(4);
+			Nni.writeUnsignedNniTlv(encoder, 0xC0, value);
+			TLV tlv = new Decoder(encoder.getWriteBuf()).read();
+			Assert.assertEquals(Nni.sizeOfUnsigned(value), tlv.getLength());
+			Assert.assertEquals(Long.toUnsignedString(value), Long.toUnsignedString(tlv.unsignedNniValue()));
+
+			byte[] output = Encoder.encode(Nni.NNI(value, Options.unsigned()));
+			Assert.assertArrayEquals(tlv.getValue(), output);
+			Number number = Nni.decode(ByteBuffer.wrap(output), Options.unsigned());
+			Assert.assertEquals(value, number.longValue());
+		}
+
+		// 2^64-1
+		Assert.assertEquals("18446744073709551615", Commons.MAX_UNSAFE_INTEGER.toString());
+		Assert.assertArrayEquals(new byte[]{-1, -1, -1, -1, -1, -1, -1, -1}, Encoder.encode(Nni.NNI(Commons.MAX_UNSAFE_INTEGER)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsignedOverflow() {
+		Nni.NNI(Commons.MAX_UNSAFE_INTEGER.add(BigInteger.ONE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeLongAboveSigned() {
+		Nni.decodeLong(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1, -1, -1, -1, -1}));
+	}
+
 	private byte[] getNniEncodedBytes(Number n) {
 		Encodable encodable = Nni.NNI(n);
 		return Encoder.encode(encodable, 10);
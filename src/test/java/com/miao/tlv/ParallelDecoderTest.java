@@ -0,0 +1,71 @@
+package com.miao.tlv;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.miao.tlv.Strings.hexToByteArray;
+
+@Slf4j
+public class ParallelDecoderTest {
+
+    @Test
+    public void testScan() {
+        byte[] input = hexToByteArray(new int[]{
+                0xA0, 0x02, 0xA2, 0x00,
+                0xFD, 0x01, 0x00, 0x01, 0x05,
+                0x08, 0x00,
+        });
+        ByteBuffer buf = ByteBuffer.wrap(input);
+        Assert.assertArrayEquals(new int[]{0, 4, 9, 11}, ParallelDecoder.scan(buf));
+        Assert.assertArrayEquals(new int[]{0}, ParallelDecoder.scan(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void testDecodeInOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 10000; i++) {
+            out.write(Encoder.encode(new TLV(0xA0, new TLV(0xA1, new byte[]{(byte) (i >> 8), (byte) i}))));
+        }
+        byte[] input = out.toByteArray();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelDecoder parallelDecoder = new ParallelDecoder(pool, 100);
+            List<Integer> values = parallelDecoder.decode(input, decoder -> {
+                TLV a1 = decoder.read().vd().read();
+                return ((a1.getValue()[0] & 0xFF) << 8) + (a1.getValue()[1] & 0xFF);
+            });
+
+            Assert.assertEquals(10000, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Assert.assertEquals(i & 0xFFFF, values.get(i).intValue());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDecodeEvDecoder() throws IOException {
+        EvDecoder<EvdTestTarget> evDecoder = new EvDecoder<EvdTestTarget>("A0", 0xA0)
+                .add(0xA1, (t, tlv) -> t.a1 = tlv.getValue()[0]);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 1000; i++) {
+            out.write(hexToByteArray(new int[]{0xA0, 0x03, 0xA1, 0x01, i % 100}));
+        }
+
+        List<EvdTestTarget> targets = new ParallelDecoder().decode(out.toByteArray(), evDecoder, EvdTestTarget::new);
+        Assert.assertEquals(1000, targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            Assert.assertEquals(i % 100, targets.get(i).getA1());
+        }
+    }
+}
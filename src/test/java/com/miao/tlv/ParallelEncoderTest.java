@@ -0,0 +1,71 @@
+package com.miao.tlv;
+
+import com.google.common.collect.Lists;
+import com.miao.tlv.nni.Nni;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+@Slf4j
+public class ParallelEncoderTest {
+
+    private List<TLV> children(int count) {
+        List<TLV> children = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            TLV child = new TLV(0x10 + i % 500, new byte[0]);
+            child.addChildTLV(new TLV(0xC0, new byte[]{(byte) i}));
+            child.addChildTLV(new TLV(0xC1, new byte[i % 300]));
+            children.add(child);
+        }
+        return children;
+    }
+
+    @Test
+    public void testEncodeList() {
+        List<TLV> children = children(10000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelEncoder encoder = new ParallelEncoder(pool, 100);
+            Assert.assertArrayEquals(Encoder.encode(children), encoder.encode(children));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEncodeContainer() {
+        TLV root = new TLV(0xA0, new byte[0]);
+        for (TLV child : children(5000)) {
+            root.addChildTLV(child);
+        }
+
+        byte[] expected = Encoder.encode(root);
+        Assert.assertArrayEquals(expected, new ParallelEncoder().encode(root));
+        Assert.assertArrayEquals(expected, new ParallelEncoder().encodeTlv(0xA0, root.getTlvList()));
+    }
+
+    /**
+     * 与 prependTlv(type, Encodable...) 结果相同
+     */
+    @Test
+    public void testEncodables() {
+        List<Encodable> encodables = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            encodables.add(Nni.NNI(i * 1000));
+        }
+
+        Encoder encoder = new Encoder();
+        encoder.prependTlv(0xA0, encodables.toArray(new Encodable[0]));
+        byte[] expected = Strings.getRemainBytes(encoder.getWriteBuf());
+        Assert.assertArrayEquals(expected, new ParallelEncoder(ForkJoinPool.commonPool(), 7).encodeTlv(0xA0, encodables));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertArrayEquals(new byte[]{(byte) 0xA0, 0}, new ParallelEncoder().encodeTlv(0xA0, Lists.newArrayList()));
+        Assert.assertArrayEquals(new byte[0], new ParallelEncoder().encode(Lists.newArrayList()));
+    }
+}
@@ -0,0 +1,115 @@
+package com.miao.tlv;
+
+import com.miao.tlv.nni.Nni;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@Slf4j
+public class SegmentedEncoderTest {
+
+    private TLV message() {
+        byte[] big = new byte[1000];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = (byte) i;
+        }
+        TLV root = new TLV(253, new byte[0]);
+        root.addChildTLV(new TLV(8, new byte[]{1, 2, 3}));
+        root.addChildTLV(new TLV(65535, big));
+        root.addChildTLV(new TLV(9, new byte[]{4}));
+        return root;
+    }
+
+    @Test
+    public void testSameAsEncoder() {
+        TLV root = message();
+        byte[] expected = Encoder.encode(root);
+
+        SegmentedEncoder encoder = new SegmentedEncoder(64);
+        encoder.prependTlv(root);
+        Assert.assertEquals(expected.length, encoder.getSize());
+        Assert.assertArrayEquals(expected, encoder.getOutput());
+
+        ByteBuffer[] buffers = encoder.toBuffers();
+        Assert.assertEquals(encoder.getChunkCount(), buffers.length);
+        Assert.assertTrue(buffers.length > 1);
+        for (ByteBuffer buffer : buffers) {
+            Assert.assertTrue(buffer.remaining() <= 64);
+        }
+    }
+
+    /**
+     * Encodable 的 TLV-LENGTH 通过写入字节数计算，跨 chunk 时也正确
+     */
+    @Test
+    public void testEncodableAcrossChunks() {
+        Encodable encodable = e -> e.prependTlv(0xA0, Nni.NNI(0x100000000L), Nni.NNI(0x1234), Nni.NNI(1));
+
+        SegmentedEncoder encoder = new SegmentedEncoder(4);
+        encodable.encodeTo(encoder);
+        Assert.assertArrayEquals(Encoder.encode(encodable), encoder.getOutput());
+        Assert.assertTrue(encoder.getChunkCount() > 1);
+
+        encoder.reset();
+        Assert.assertEquals(0, encoder.getSize());
+        Assert.assertEquals(1, encoder.getChunkCount());
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        TLV root = message();
+        SegmentedEncoder encoder = new SegmentedEncoder(100);
+        encoder.prependTlv(root);
+
+        Path file = Files.createTempFile("tlv", ".bin");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                Assert.assertEquals(encoder.sizeLong(), encoder.writeTo(channel));
+            }
+            Assert.assertArrayEquals(Encoder.encode(root), Files.readAllBytes(file));
+            // toBuffers 返回视图，可以重复写出
+            Assert.assertArrayEquals(Encoder.encode(root), encoder.getOutput());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * getWriteBuf 返回全部编码结果，而不只是当前 chunk
+     */
+    @Test
+    public void testGetWriteBuf() {
+        TLV root = message();
+        SegmentedEncoder encoder = new SegmentedEncoder(64);
+        encoder.prependTlv(root);
+        Assert.assertTrue(encoder.getChunkCount() > 1);
+
+        ByteBuffer output = encoder.getWriteBuf();
+        Assert.assertTrue(output.isReadOnly());
+        Assert.assertArrayEquals(Encoder.encode(root), Strings.getRemainBytes(output));
+        Assert.assertEquals(encoder.getSize(), new Decoder(output).read().getTlvSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteToNonBlocking() throws IOException {
+        SegmentedEncoder encoder = new SegmentedEncoder(100);
+        encoder.prependTlv(message());
+
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().configureBlocking(false);
+            encoder.writeTo(pipe.sink());
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+}
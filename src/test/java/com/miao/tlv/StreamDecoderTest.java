@@ -0,0 +1,95 @@
+package com.miao.tlv;
+
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+
+@Slf4j
+public class StreamDecoderTest {
+
+    @Test
+    public void testFeedChunks() {
+        byte[] input = buildStream();
+
+        // 每次只输入 3 个字节，TLV 跨多个块
+        StreamDecoder streamDecoder = new StreamDecoder(4, 1024);
+        List<TLV> tlvList = Lists.newArrayList();
+        for (int i = 0; i < input.length; i += 3) {
+            tlvList.addAll(streamDecoder.feed(Arrays.copyOfRange(input, i, Math.min(i + 3, input.length))));
+        }
+
+        assertStream(tlvList);
+        Assert.assertEquals(0, streamDecoder.buffered());
+    }
+
+    @Test
+    public void testReadInputStream() throws IOException {
+        StreamDecoder streamDecoder = new StreamDecoder();
+        ByteArrayInputStream in = new ByteArrayInputStream(buildStream());
+
+        List<TLV> tlvList = Lists.newArrayList();
+        TLV tlv = null;
+        while ((tlv = streamDecoder.read(in)) != null) {
+            tlvList.add(tlv);
+        }
+
+        assertStream(tlvList);
+        Assert.assertTrue(streamDecoder.eof());
+    }
+
+    @Test
+    public void testReadChannel() throws IOException {
+        StreamDecoder streamDecoder = new StreamDecoder(8, 1024);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(buildStream()));
+
+        List<TLV> tlvList = Lists.newArrayList();
+        TLV tlv = null;
+        while ((tlv = streamDecoder.read(channel)) != null) {
+            tlvList.add(tlv);
+        }
+        assertStream(tlvList);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncated() throws IOException {
+        byte[] input = buildStream();
+        StreamDecoder streamDecoder = new StreamDecoder();
+        ByteArrayInputStream in = new ByteArrayInputStream(Arrays.copyOf(input, input.length - 1));
+        while (streamDecoder.read(in) != null) {
+            log.info("buffered: {}", streamDecoder.buffered());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFrameTooLarge() {
+        StreamDecoder streamDecoder = new StreamDecoder(18, 32);
+        streamDecoder.feed(Encoder.encode(new TLV(1, new byte[64])));
+    }
+
+    private byte[] buildStream() {
+        TLV tlv1 = new TLV(12, new byte[]{12, 2});
+        TLV tlv2 = new TLV(253, new byte[300]);
+        TLV tlv3 = new TLV(345, new byte[]{1, 2, 3});
+        return Encoder.encode(Lists.newArrayList(tlv1, tlv2, tlv3));
+    }
+
+    private void assertStream(List<TLV> tlvList) {
+        Assert.assertEquals(3, tlvList.size());
+        Assert.assertEquals(12, tlvList.get(0).getType());
+        Assert.assertEquals("[12, 2]", Arrays.toString(tlvList.get(0).getValue()));
+        Assert.assertEquals(253, tlvList.get(1).getType());
+        Assert.assertEquals(300, tlvList.get(1).getLength());
+        Assert.assertEquals(345, tlvList.get(2).getType());
+        Assert.assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3}), tlvList.get(2).getValueBuf());
+    }
+}
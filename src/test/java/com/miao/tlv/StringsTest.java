@@ -50,4 +50,15 @@ public class StringsTest {
         Assert.assertTrue(Strings.printTT(0xFFFFFFFF).equals("0xFFFFFFFF"));
     }
 
+    @Test
+    public void testSizeofVarNum() {
+        Assert.assertEquals(1, Strings.sizeofVarNum(252));
+        Assert.assertEquals(3, Strings.sizeofVarNum(253));
+        Assert.assertEquals(3, Strings.sizeofVarNum(0xFFFF));
+        Assert.assertEquals(5, Strings.sizeofVarNum(0x10000));
+        Assert.assertEquals(5, Strings.sizeofVarNum(0xFFFFFFFFL));
+        Assert.assertEquals(9, Strings.sizeofVarNum(0x100000000L));
+        Assert.assertEquals(9, Strings.sizeofVarNum(-1L));
+    }
+
 }
@@ -4,6 +4,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
 @Slf4j
 public class TLVTest {
 
@@ -108,4 +112,113 @@ public class TLVTest {
 //    }
 
 
+    /**
+     * zero-copy 解码得到的 TLV 编码时直接拷贝原始字节（这里 TLV-LENGTH 不是最短编码，逐层重新编码会得到不同的结果）
+     */
+    @Test
+    public void testReencodeDecoded() {
+        // A0 FD 00 08 [C0 01 07] [C1 FD 00 01 08]
+        byte[] wire = new byte[]{(byte) 0xA0, (byte) 0xFD, 0x00, 0x08, (byte) 0xC0, 0x01, 0x07, (byte) 0xC1, (byte) 0xFD, 0x00, 0x01, 0x08};
+        TLV root = new Decoder(wire).setZeroCopy(true).read();
+        Assert.assertEquals(wire.length, root.getTlvSize());
+        Assert.assertArrayEquals(wire, Encoder.encode(root));
+
+        // 子 TLV 同样保留原始字节
+        TLV child = root.getChildTlvList().get(1);
+        Assert.assertEquals(5, child.getTlvSize());
+        Assert.assertArrayEquals(new byte[]{(byte) 0xC1, (byte) 0xFD, 0x00, 0x01, 0x08}, Encoder.encode(child));
+    }
+
+    /**
+     * 拷贝模式的 valueBuf 可写，不保留原始字节，按字段重新编码（最短编码）
+     */
+    @Test
+    public void testReencodeCopied() {
+        byte[] wire = new byte[]{(byte) 0xA0, (byte) 0xFD, 0x00, 0x08, (byte) 0xC0, 0x01, 0x07, (byte) 0xC1, (byte) 0xFD, 0x00, 0x01, 0x08};
+        TLV root = new Decoder(wire).read();
+        Assert.assertArrayEquals(new byte[]{(byte) 0xA0, 0x08, (byte) 0xC0, 0x01, 0x07, (byte) 0xC1, (byte) 0xFD, 0x00, 0x01, 0x08},
+                Encoder.encode(root));
+
+        TLV child = root.getChildTlvList().get(1);
+        Assert.assertArrayEquals(new byte[]{(byte) 0xC1, 0x01, 0x08}, Encoder.encode(child));
+
+        // 修改 valueBuf 后编码得到修改后的字节
+        child.getValueBuf().put(0, (byte) 0x09);
+        Assert.assertArrayEquals(new byte[]{(byte) 0xC1, 0x01, 0x09}, Encoder.encode(child));
+        TLV leaf = new Decoder(new byte[]{(byte) 0xC1, (byte) 0xFD, 0x00, 0x01, 0x08}).read();
+        leaf.getValueBuf().put(0, (byte) 0x0A);
+        Assert.assertArrayEquals(new byte[]{(byte) 0xC1, 0x01, 0x0A}, Encoder.encode(leaf));
+    }
+
+    /**
+     * addChildTLV 后原始字节失效，重新编码；未修改的子 TLV 仍然整体拷贝
+     */
+    @Test
+    public void testInvalidateOnAddChild() {
+        byte[] wire = new byte[]{(byte) 0xA0, (byte) 0xFD, 0x00, 0x03, (byte) 0xC0, 0x01, 0x07};
+        TLV root = new Decoder(wire).setZeroCopy(true).read();
+
+        TLV rewritten = new TLV(0xB0, new byte[0]);
+        rewritten.addChildTLV(root);
+        rewritten.addChildTLV(new TLV(0xC2, new byte[]{9}));
+        Assert.assertArrayEquals(new byte[]{(byte) 0xB0, 0x0A, (byte) 0xA0, (byte) 0xFD, 0x00, 0x03, (byte) 0xC0, 0x01, 0x07, (byte) 0xC2, 0x01, 0x09},
+                Encoder.encode(rewritten));
+
+        root.addChildTLV(new TLV(0xC3, new byte[]{1}));
+        Assert.assertArrayEquals(new byte[]{(byte) 0xA0, 0x03, (byte) 0xC3, 0x01, 0x01}, Encoder.encode(root));
+    }
+
+    @Test
+    public void testNniValue() {
+        byte[] wire = new byte[]{(byte) 0xA0, 0x07, (byte) 0xC0, 0x01, 0x07, (byte) 0xC1, 0x02, 0x12, 0x34};
+        for (boolean zeroCopy : new boolean[]{false, true}) {
+            TLV root = new Decoder(wire).setZeroCopy(zeroCopy).read();
+            List<TLV> children = root.getChildTlvList();
+            Assert.assertEquals(7, children.get(0).nniValue());
+            Assert.assertEquals(0x1234, children.get(1).nniValue());
+        }
+        Assert.assertEquals(0x100000000L, new TLV(8, new byte[]{0, 0, 0, 1, 0, 0, 0, 0}).nniValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNniValueInvalidLength() {
+        new TLV(8, new byte[]{1, 2, 3}).nniValue();
+    }
+
+    /**
+     * TLV(type, ByteBuffer) 的 TLV-VALUE >= 253 字节时 TLV-LENGTH 需要 3 字节
+     */
+    @Test
+    public void testLargeByteBufferValue() {
+        TLV leaf = new TLV(0xC0, ByteBuffer.allocate(300));
+        Assert.assertEquals(300, leaf.getLength());
+        Assert.assertEquals(1 + 3 + 300, leaf.getTlvSize());
+        Assert.assertEquals(leaf.getTlvSize(), Encoder.encode(leaf).length);
+
+        TLV root = new TLV(0xA0, new byte[0]);
+        Assert.assertEquals(1 + 3 + 300, root.addChildTLV(leaf));
+        Assert.assertEquals(root.getTlvSize(), Encoder.encode(root).length);
+    }
+
+    /**
+     * 子 TLV 总长 >= 253 时 TLV-LENGTH 需要 3 字节
+     */
+    @Test
+    public void testLargeContainerLength() {
+        TLV root = new TLV(0xA0, new byte[0]);
+        // 2 * (1 + 1 + 200) = 404
+        root.addChildTLV(new TLV(0xC0, new byte[200]));
+        root.addChildTLV(new TLV(0xC1, new byte[200]));
+        Assert.assertEquals(404, root.getLength());
+        Assert.assertEquals(1 + 3 + 404, root.getTlvSize());
+
+        byte[] output = Encoder.encode(root);
+        Assert.assertEquals(root.getTlvSize(), output.length);
+        Assert.assertArrayEquals(new byte[]{(byte) 0xA0, (byte) 0xFD, 0x01, (byte) 0x94}, Arrays.copyOf(output, 4));
+
+        TLV decoded = new Decoder(output).read();
+        Assert.assertEquals(404, decoded.getLength());
+        Assert.assertEquals(2, decoded.getChildTlvList().size());
+    }
+
 }
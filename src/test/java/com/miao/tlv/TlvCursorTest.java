@@ -0,0 +1,116 @@
+package com.miao.tlv;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static com.miao.tlv.Strings.hexToByteArray;
+
+@Slf4j
+public class TlvCursorTest {
+
+    private static final byte[] INPUT = hexToByteArray(new int[]{
+            0xA0, 0x11,
+            0xA1, 0x01, 0x10,
+            0xA4, 0x00,
+            0xA6, 0x00,
+            0xA6, 0x00,
+            0xA9, 0x00,
+            0xC0, 0x04, 0xC1, 0x02, 0x01, 0x04,
+            0xFD, 0x01, 0x00, 0x01, 0x05,
+    });
+
+    @Test
+    public void testIterate() {
+        TlvCursor cursor = new TlvCursor(ByteBuffer.wrap(INPUT));
+
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals(0xA0, cursor.type());
+        Assert.assertEquals(0x11, cursor.length());
+        Assert.assertEquals(2, cursor.valueOffset());
+
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals(0x100, cursor.type());
+        Assert.assertEquals(1, cursor.length());
+        Assert.assertEquals(5, INPUT[cursor.valueOffset()]);
+
+        Assert.assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testEnterChildren() {
+        TlvCursor cursor = new TlvCursor(ByteBuffer.wrap(INPUT));
+        Assert.assertTrue(cursor.next());
+        cursor.enterChildren();
+        Assert.assertEquals(1, cursor.depth());
+
+        int count = 0;
+        long c1 = -1;
+        while (cursor.next()) {
+            count++;
+            if (cursor.type() == 0xC0) {
+                cursor.enterChildren();
+                Assert.assertTrue(cursor.next());
+                Assert.assertEquals(0xC1, cursor.type());
+                c1 = ((INPUT[cursor.valueOffset()] & 0xFF) << 8) + (INPUT[cursor.valueOffset() + 1] & 0xFF);
+                cursor.skipRemaining();
+                Assert.assertEquals(0xC0, cursor.type());
+            }
+        }
+        Assert.assertEquals(6, count);
+        Assert.assertEquals(0x0104, c1);
+
+        // 回到顶层，继续遍历下一个元素
+        cursor.skipRemaining();
+        Assert.assertEquals(0, cursor.depth());
+        Assert.assertEquals(0xA0, cursor.type());
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals(0x100, cursor.type());
+    }
+
+    @Test
+    public void testReuse() {
+        TlvCursor cursor = new TlvCursor();
+        for (int i = 0; i < 3; i++) {
+            cursor.reset(ByteBuffer.wrap(INPUT));
+            int count = 0;
+            while (cursor.next()) {
+                count++;
+            }
+            Assert.assertEquals(2, count);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        TlvCursor cursor = new TlvCursor(ByteBuffer.wrap(INPUT, 0, 10));
+        cursor.next();
+    }
+
+    /**
+     * valueOffset + TLV-LENGTH 超出 int 范围时同样检查
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testLengthOverflow() {
+        byte[] input = new byte[]{0x08, (byte) 0xFE, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+        new TlvCursor(ByteBuffer.wrap(input)).next();
+    }
+
+    /**
+     * TLV-TYPE / TLV-LENGTH 被截断
+     */
+    @Test
+    public void testTruncatedHeader() {
+        byte[][] inputs = new byte[][]{{(byte) 0xFD, 0x01}, {0x01}, {0x01, (byte) 0xFD, 0x00}};
+        for (byte[] input : inputs) {
+            try {
+                new TlvCursor(ByteBuffer.wrap(input)).next();
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.miao.tlv;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+@Slf4j
+public class TlvIndexTest {
+
+    private Path file;
+
+    @Before
+    public void before() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 5000; i++) {
+            out.write(Encoder.encode(new TLV(i % 7 == 6 ? 300 : 8, new byte[]{(byte) i, (byte) (i >> 8)})));
+        }
+        file = Files.createTempFile("tlv", ".bin");
+        Files.write(file, out.toByteArray());
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(TlvIndex.sidecarOf(file));
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testBuildAndSeek() throws IOException {
+        try (TlvIndex index = TlvIndex.build(file)) {
+            Assert.assertEquals(5000, index.size());
+
+            TlvIndex.Entry entry = index.get(4321);
+            Assert.assertEquals(4321, entry.getOrdinal());
+            Assert.assertEquals(4321 * 4 + (4321 / 7) * 2, entry.getOffset());
+            Assert.assertEquals(2, entry.getLength());
+
+            TLV tlv = index.openDecoder(4321).read();
+            Assert.assertEquals(entry.getType(), tlv.getType());
+            Assert.assertEquals((byte) 4321, tlv.getValue()[0]);
+            Assert.assertEquals((byte) (4321 >> 8), tlv.getValue()[1]);
+
+            TlvIndex.Entry first = index.firstOfType(300);
+            Assert.assertEquals(6, first.getOrdinal());
+            Assert.assertNull(index.firstOfType(9));
+        }
+
+        // 重新打开已有的索引
+        try (TlvIndex index = TlvIndex.open(file)) {
+            // 只映射当前 TLV
+            Decoder decoder = index.openDecoder(4998);
+            Assert.assertEquals(1, decoder.readTlvList().size());
+            Assert.assertEquals(1, index.openDecoder(4999).readTlvList().size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStaleIndex() throws IOException {
+        TlvIndex.build(file).close();
+        Files.write(file, Encoder.encode(new TLV(8, new byte[]{1})));
+        TlvIndex.open(file);
+    }
+
+    /**
+     * 大小不变，只有修改时间变化
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testStaleIndexSameSize() throws IOException {
+        TlvIndex.build(file).close();
+        byte[] data = Files.readAllBytes(file);
+        data[2] ^= 1;
+        Files.write(file, data);
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 10000));
+        TlvIndex.open(file);
+    }
+
+    /**
+     * 数据文件在 TLV-LENGTH 中间结束：build 失败，已有的索引不被覆盖，不留下临时文件
+     */
+    @Test
+    public void testBuildTruncated() throws IOException {
+        TlvIndex.build(file).close();
+        byte[] index = Files.readAllBytes(TlvIndex.sidecarOf(file));
+
+        byte[] data = Files.readAllBytes(file);
+        byte[] truncated = Arrays.copyOf(data, data.length + 2);
+        truncated[data.length] = 0x08;
+        truncated[data.length + 1] = (byte) 0xFD;
+        Files.write(file, truncated);
+        try {
+            TlvIndex.build(file);
+            Assert.fail();
+        } catch (EOFException e) {
+            log.info(e.getMessage());
+        }
+
+        Assert.assertArrayEquals(index, Files.readAllBytes(TlvIndex.sidecarOf(file)));
+        Assert.assertFalse(Files.exists(Paths.get(TlvIndex.sidecarOf(file) + ".tmp")));
+    }
+}
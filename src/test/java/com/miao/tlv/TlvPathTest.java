@@ -0,0 +1,85 @@
+package com.miao.tlv;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.miao.tlv.Strings.hexToByteArray;
+
+@Slf4j
+public class TlvPathTest {
+
+    private static final byte[] INPUT = hexToByteArray(new int[]{
+            0xA0, 0x14,
+            0xA1, 0x01, 0x10,
+            0xA4, 0x00,
+            0xC0, 0x04, 0xC1, 0x02, 0x01, 0x04,
+            0xC0, 0x07, 0xC2, 0x00, 0xC1, 0x03, 0x01, 0x02, 0x03,
+    });
+
+    @Test
+    public void testFirst() {
+        TlvPath path = TlvPath.compile("A0/C0/C1");
+
+        ByteBuffer value = path.first(INPUT);
+        Assert.assertEquals(ByteBuffer.wrap(new byte[]{0x01, 0x04}), value);
+        Assert.assertEquals(0x0104, path.firstNni(INPUT).getAsLong());
+
+        Assert.assertEquals(0x10, TlvPath.compile("0xA0/0xA1").firstNni(INPUT).getAsLong());
+        Assert.assertFalse(TlvPath.compile("A0/C0/C3").firstNni(INPUT).isPresent());
+        Assert.assertNull(TlvPath.compile("A0/C0/C3").first(INPUT));
+        Assert.assertNull(TlvPath.compile("A1").first(INPUT));
+    }
+
+    @Test
+    public void testAll() {
+        List<ByteBuffer> values = TlvPath.compile("A0/C0/C1").all(INPUT);
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals(ByteBuffer.wrap(new byte[]{0x01, 0x02, 0x03}), values.get(1));
+
+        Assert.assertEquals(3, TlvPath.compile("A0/C0/*").all(INPUT).size());
+        Assert.assertEquals(4, TlvPath.compile("A0/*").all(INPUT).size());
+    }
+
+    /**
+     * 中间一级的 "*" 会匹配到叶子元素（A1 的 TLV-VALUE 不是 TLV 序列），跳过它继续查找兄弟元素
+     */
+    @Test
+    public void testWildcardInMiddle() {
+        TlvPath path = TlvPath.compile("A0/*/C1");
+        Assert.assertEquals(ByteBuffer.wrap(new byte[]{0x01, 0x04}), path.first(INPUT));
+
+        List<ByteBuffer> values = path.all(INPUT);
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals(ByteBuffer.wrap(new byte[]{0x01, 0x02, 0x03}), values.get(1));
+
+        // EvDecoderTest 中的输入：A1 是叶子
+        byte[] input = hexToByteArray(new int[]{0xA0, 0x0A, 0xA1, 0x01, 0x10, 0xC0, 0x05, 0xC1, 0x03, 0x01, 0x02, 0x03});
+        Assert.assertEquals(ByteBuffer.wrap(new byte[]{0x01, 0x02, 0x03}), TlvPath.compile("A0/*/C1").first(input));
+        Assert.assertNull(TlvPath.compile("A0/A1/C1").first(input));
+    }
+
+    @Test
+    public void testEncodedInput() {
+        TLV c1 = new TLV(0xC1, new byte[]{0x01, 0x04});
+        TLV c0 = new TLV(0xC0, c1);
+        TLV a0 = new TLV(0xA0, c0);
+        byte[] input = Encoder.encode(a0);
+
+        // 不在 buffer 起始位置的输入
+        ByteBuffer buf = ByteBuffer.allocate(input.length + 3);
+        buf.position(3);
+        buf.put(input);
+        buf.position(3);
+        Assert.assertEquals(0x0104, TlvPath.compile("A0/C0/C1").firstNni(buf).getAsLong());
+        Assert.assertEquals(3, buf.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidExpression() {
+        TlvPath.compile("A0/XYZ");
+    }
+}
@@ -0,0 +1,113 @@
+package com.miao.tlv;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.miao.tlv.Strings.hexToByteArray;
+
+@Slf4j
+public class TlvValidatorTest {
+
+    private static final byte[] INPUT = hexToByteArray(new int[]{
+            0xA0, 0x11,
+            0xA1, 0x01, 0x10,
+            0xA4, 0x00,
+            0xA6, 0x00,
+            0xA6, 0x00,
+            0xA9, 0x00,
+            0xC0, 0x04, 0xC1, 0x02, 0x01, 0x04,
+    });
+
+    private final TlvValidator validator = new TlvValidator().setContainerTypes(0xA0, 0xC0);
+
+    @Test
+    public void testValid() {
+        Assert.assertEquals(8, validator.validate(INPUT));
+        Assert.assertEquals(1, new TlvValidator().validate(INPUT));
+    }
+
+    @Test
+    public void testNestedLengthMismatch() {
+        byte[] input = INPUT.clone();
+        // C0 的长度超出 A0
+        input[14] = 0x05;
+        assertInvalid(validator, input, "TLV-LENGTH exceeds enclosing element at offset 13");
+
+        // 顶层被截断
+        assertInvalid(validator, Arrays.copyOf(INPUT, INPUT.length - 1), "TLV-LENGTH exceeds enclosing element at offset 0");
+    }
+
+    @Test
+    public void testNonMinimal() {
+        byte[] input = hexToByteArray(new int[]{0xFD, 0x00, 0x08, 0x00});
+        assertInvalid(validator, input, "VAR-NUMBER is not minimally encoded at offset 0");
+        Assert.assertEquals(1, new TlvValidator().setAllowNonMinimal(true).validate(input));
+    }
+
+    @Test
+    public void testMaxDepth() {
+        assertInvalid(new TlvValidator().setContainerTypes(0xA0, 0xC0).setMaxDepth(1), INPUT, "nesting depth exceeds 1 at offset 13");
+    }
+
+    @Test
+    public void testDecoder() {
+        Decoder decoder = validator.decoder(INPUT);
+        TLV tlv = decoder.read();
+        Assert.assertEquals(6, tlv.getChildTlvList().size());
+
+        // 没有被 validator 当作 container 的 TLV-VALUE，作为嵌套 TLV 读取时仍然检查
+        byte[] input = hexToByteArray(new int[]{0xB0, 0x02, 0xB1, 0x7F});
+        TLV leaf = validator.decoder(input).read();
+        try {
+            leaf.getChildTlvList();
+            Assert.fail("should be invalid");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("TLV-VALUE of 176 is not a TLV sequence, child TLV-LENGTH 127 exceeds remaining 0", e.getMessage());
+        }
+        try {
+            leaf.vd().read();
+            Assert.fail("should be invalid");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("TLV-LENGTH 127 exceeds remaining 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testTruncatedChild() {
+        // 子 TLV 被截断，getChildTlvList 抛出异常，不返回只解析了一部分的列表
+        byte[] value = hexToByteArray(new int[]{0xA1, 0x01, 0x10, 0xA4, 0x05, 0x01});
+        TLV tlv = new TLV(0xA0, value);
+        try {
+            tlv.getChildTlvList();
+            Assert.fail("should be invalid");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("TLV-VALUE of 160 is not a TLV sequence, child TLV-LENGTH 5 exceeds remaining 1", e.getMessage());
+        }
+        Assert.assertEquals(value.length, tlv.getValueBuf().remaining());
+
+        // 子 TLV 的 TLV-LENGTH 被截断
+        TLV truncatedHeader = new TLV(0xA0, hexToByteArray(new int[]{0xA1, 0x01, 0x10, 0xA4, 0xFD, 0x01}));
+        try {
+            truncatedHeader.getChildTlvList();
+            Assert.fail("should be invalid");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("TLV-VALUE of 160 is not a TLV sequence, truncated child header at offset 3", e.getMessage());
+        }
+
+        byte[] input = Encoder.encode(tlv);
+        Assert.assertFalse(validator.isValid(ByteBuffer.wrap(input)));
+    }
+
+    private void assertInvalid(TlvValidator validator, byte[] input, String message) {
+        try {
+            validator.validate(input);
+            Assert.fail("should be invalid");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+    }
+}